@@ -0,0 +1,128 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares an {@link AstArena} to the object tree of a generated program:
+ * parsing into each, and a traversal counting the binary expressions, which
+ * walks the tree with a stack but scans the arena in order. Run with {@code
+ * -prof gc} to compare the allocation of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArenaBenchmark {
+
+    @Param({"1MB", "20MB"})
+    public String size;
+
+    private TokenBuffer tokens;
+    private Ast.Source source;
+    private AstArena arena;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tokens = new Lexer(Programs.generate(Programs.parseSize(size))).lexBuffer();
+        source = new Parser(tokens).parseSource();
+        arena = new Parser(tokens).parseArena();
+    }
+
+    @Benchmark
+    public Ast.Source parseTree() {
+        return new Parser(tokens).parseSource();
+    }
+
+    @Benchmark
+    public AstArena parseArena() {
+        return new Parser(tokens).parseArena();
+    }
+
+    @Benchmark
+    public int traverseTree() {
+        int count = 0;
+        ArrayDeque<Ast> stack = new ArrayDeque<>();
+        List<Ast> children = new ArrayList<>();
+        stack.push(source);
+        while (!stack.isEmpty()) {
+            Ast ast = stack.pop();
+            if (ast instanceof Ast.Expression.Binary) {
+                count++;
+            }
+            children.clear();
+            addChildren(ast, children);
+            for (Ast child : children) {
+                stack.push(child);
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int traverseArena() {
+        int count = 0;
+        for (int node = AstArena.ROOT; node < arena.size(); node++) {
+            if (arena.getKind(node) == AstArena.BINARY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void addChildren(Ast ast, List<Ast> children) {
+        if (ast instanceof Ast.Source) {
+            children.addAll(((Ast.Source) ast).getGlobals());
+            children.addAll(((Ast.Source) ast).getFunctions());
+        } else if (ast instanceof Ast.Global) {
+            ((Ast.Global) ast).getValue().ifPresent(children::add);
+        } else if (ast instanceof Ast.Function) {
+            children.addAll(((Ast.Function) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Expression) {
+            children.add(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(children::add);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            children.add(((Ast.Statement.Assignment) ast).getReceiver());
+            children.add(((Ast.Statement.Assignment) ast).getValue());
+        } else if (ast instanceof Ast.Statement.If) {
+            children.add(((Ast.Statement.If) ast).getCondition());
+            children.addAll(((Ast.Statement.If) ast).getThenStatements());
+            children.addAll(((Ast.Statement.If) ast).getElseStatements());
+        } else if (ast instanceof Ast.Statement.While) {
+            children.add(((Ast.Statement.While) ast).getCondition());
+            children.addAll(((Ast.Statement.While) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Return) {
+            children.add(((Ast.Statement.Return) ast).getValue());
+        } else if (ast instanceof Ast.Expression.Group) {
+            children.add(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            children.add(((Ast.Expression.Binary) ast).getLeft());
+            children.add(((Ast.Expression.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).getOffset().ifPresent(children::add);
+        } else if (ast instanceof Ast.Expression.Function) {
+            children.addAll(((Ast.Expression.Function) ast).getArguments());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            children.addAll(((Ast.Expression.PlcList) ast).getValues());
+        }
+    }
+
+}
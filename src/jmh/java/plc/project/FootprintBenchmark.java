@@ -0,0 +1,82 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained by the AST of a generated program, with and
+ * without {@link Parser#setCompact(boolean)}. The result of interest is the
+ * secondary {@code heapBytes}, the growth of the heap after a full collection
+ * while the AST is still reachable; the time is that of one parse and includes
+ * the collections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseSerialGC"})
+public class FootprintBenchmark {
+
+    @Param({"1MB", "20MB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private TokenBuffer tokens;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tokens = new Lexer(Programs.generate(Programs.parseSize(size))).lexBuffer();
+    }
+
+    @Benchmark
+    public Ast.Source parse(Counters counters) {
+        long before = usedHeap();
+        Parser parser = new Parser(tokens);
+        parser.setCompact(compact);
+        Ast.Source source = parser.parseSource();
+        counters.heapBytes += usedHeap() - before;
+        return source;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The secondary results of a run, reported by JMH as totals per iteration
+     * (of one parse each).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long heapBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            heapBytes = 0;
+        }
+
+    }
+
+}
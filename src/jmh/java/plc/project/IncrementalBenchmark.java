@@ -0,0 +1,71 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of an edit to one function of a generated program,
+ * through {@link IncrementalLexer} and {@link IncrementalParser}. Each op
+ * inserts an operand into a statement of the middle function and removes it
+ * again. {@code lex} applies the same edits to the lexer alone, so the time
+ * spent in the parser is the difference to {@code edit}, which should stay
+ * flat as the size grows; {@code reparse} parses the whole source instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IncrementalBenchmark {
+
+    private static final String INSERTED = " + 1";
+
+    @Param({"10KB", "1MB", "10MB"})
+    public String size;
+
+    private IncrementalLexer lexer;
+    private IncrementalParser parser;
+    private int offset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String input = Programs.generate(Programs.parseSize(size));
+        lexer = new IncrementalLexer(input);
+        parser = new IncrementalParser(lexer.getTokens());
+        offset = input.indexOf(" - 3;", input.indexOf("FUN ", input.length() / 2));
+    }
+
+    @Benchmark
+    public Ast.Source edit() {
+        parser.edit(lexer.getTokens(), lexer.edit(offset, 0, INSERTED));
+        return parser.edit(lexer.getTokens(), lexer.edit(offset, INSERTED.length(), ""));
+    }
+
+    @Benchmark
+    public IncrementalLexer.Edit lex() {
+        lexer.edit(offset, 0, INSERTED);
+        return lexer.edit(offset, INSERTED.length(), "");
+    }
+
+    @Benchmark
+    public Ast.Source reparse() {
+        lexer.edit(offset, 0, INSERTED);
+        new Parser(lexer.getTokens()).parseSource();
+        lexer.edit(offset, INSERTED.length(), "");
+        return new Parser(lexer.getTokens()).parseSource();
+    }
+
+}
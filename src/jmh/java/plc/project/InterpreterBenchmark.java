@@ -0,0 +1,121 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures interpreting a tight loop of offsets, calls and
+ * arithmetic, whose cost is dominated by visiting nodes. The {@code
+ * INSTANCEOF} dispatch restores the chain of checks that {@link
+ * Ast.Visitor#visit(Ast)} used before {@link Ast#accept(Ast.Visitor)}, as a
+ * baseline for the same interpreter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InterpreterBenchmark {
+
+    @Param({"ACCEPT", "INSTANCEOF"})
+    public Dispatch dispatch;
+
+    @Param({"10000"})
+    public int iterations;
+
+    private Ast.Source source;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = new Parser(new Lexer(String.join("\n",
+                "LIST values: Integer = [1, 2, 3];",
+                "VAR total: Integer = 0;",
+                "FUN add(x: Integer, y: Integer): Integer DO",
+                "    RETURN x + y;",
+                "END",
+                "FUN main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    WHILE i < " + iterations + " DO",
+                "        total = add(total, values[2] - values[1] * (i - i));",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        )).lex()).parseSource();
+    }
+
+    @Benchmark
+    public Object interpret() {
+        Interpreter interpreter = dispatch == Dispatch.ACCEPT
+                ? new Interpreter(new plc.project.Scope(null))
+                : new InstanceofInterpreter(new plc.project.Scope(null));
+        return interpreter.visit(source).getValue();
+    }
+
+    public enum Dispatch {
+        ACCEPT, INSTANCEOF
+    }
+
+    private static final class InstanceofInterpreter extends Interpreter {
+
+        private InstanceofInterpreter(plc.project.Scope parent) {
+            super(parent);
+        }
+
+        @Override
+        public Environment.PlcObject visit(Ast ast) {
+            if (ast instanceof Ast.Source) {
+                return visit((Ast.Source) ast);
+            } else if (ast instanceof Ast.Global) {
+                return visit((Ast.Global) ast);
+            } else if (ast instanceof Ast.Function) {
+                return visit((Ast.Function) ast);
+            } else if (ast instanceof Ast.Statement.Expression) {
+                return visit((Ast.Statement.Expression) ast);
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                return visit((Ast.Statement.Declaration) ast);
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                return visit((Ast.Statement.Assignment) ast);
+            } else if (ast instanceof Ast.Statement.If) {
+                return visit((Ast.Statement.If) ast);
+            } else if (ast instanceof Ast.Statement.Switch) {
+                return visit((Ast.Statement.Switch) ast);
+            } else if (ast instanceof Ast.Statement.Case) {
+                return visit((Ast.Statement.Case) ast);
+            } else if (ast instanceof Ast.Statement.While) {
+                return visit((Ast.Statement.While) ast);
+            } else if (ast instanceof Ast.Statement.Return) {
+                return visit((Ast.Statement.Return) ast);
+            } else if (ast instanceof Ast.Expression.Literal) {
+                return visit((Ast.Expression.Literal) ast);
+            } else if (ast instanceof Ast.Expression.Group) {
+                return visit((Ast.Expression.Group) ast);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                return visit((Ast.Expression.Binary) ast);
+            } else if (ast instanceof Ast.Expression.Access) {
+                return visit((Ast.Expression.Access) ast);
+            } else if (ast instanceof Ast.Expression.Function) {
+                return visit((Ast.Expression.Function) ast);
+            } else if (ast instanceof Ast.Expression.PlcList) {
+                return visit((Ast.Expression.PlcList) ast);
+            } else {
+                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+            }
+        }
+
+    }
+
+}
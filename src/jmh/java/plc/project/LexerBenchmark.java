@@ -0,0 +1,168 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Lexer#lex()} on synthetic corpora of each kind and size.
+ * Besides the JMH score (lexes per second), each run reports {@code
+ * megabytes} (MB/s) and {@code tokens} (tokens/s) as secondary results, which
+ * are comparable across sizes and are what lexer changes should be judged by.
+ *
+ * Run with {@code ./gradlew jmh}; results are written to {@code
+ * build/reports/jmh/results.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LexerBenchmark {
+
+    private static final int MEGABYTE = 1 << 20;
+
+    @Param({"IDENTIFIERS", "NUMBERS", "STRINGS", "OPERATORS"})
+    public Corpus corpus;
+
+    @Param({"1KB", "1MB", "50MB"})
+    public String size;
+
+    private String input;
+    private int tokens;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = corpus.generate(Programs.parseSize(size));
+        tokens = new Lexer(input).lex().size();
+    }
+
+    /**
+     * Lexes with the default {@link LexerListener#NONE}.
+     */
+    @Benchmark
+    public List<Token> lex(Counters counters) {
+        List<Token> result = new Lexer(input).lex();
+        counters.add(input.length(), tokens);
+        return result;
+    }
+
+    /**
+     * Lexes with a listener counting tokens, measuring the cost of notifying
+     * a listener which does almost no work.
+     */
+    @Benchmark
+    public List<Token> lexWithListener(Counters counters) {
+        Lexer lexer = new Lexer(input);
+        lexer.setListener(token -> counters.tokens++);
+        List<Token> result = lexer.lex();
+        counters.add(input.length(), 0);
+        return result;
+    }
+
+    /**
+     * The secondary results of a run, reported by JMH as rates per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public double megabytes;
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            tokens = 0;
+        }
+
+        void add(int characters, int tokens) {
+            megabytes += (double) characters / MEGABYTE;
+            this.tokens += tokens;
+        }
+
+    }
+
+    /**
+     * The kinds of synthetic source, each built by repeating statements
+     * dominated by one kind of token up to the requested size (in characters,
+     * which are also bytes as the corpora are ASCII). The last partial
+     * statement is replaced by newlines so the source always lexes.
+     */
+    public enum Corpus {
+
+        /**
+         * Declarations and calls with long identifiers and keywords.
+         */
+        IDENTIFIERS {
+            @Override
+            void append(StringBuilder builder, int i) {
+                builder.append("LET accumulator_").append(i % 97).append(" = compute-value(input_")
+                        .append(i % 89).append(", previous_result, @context);\n");
+            }
+        },
+
+        /**
+         * Lists of integers and decimals, including negative ones.
+         */
+        NUMBERS {
+            @Override
+            void append(StringBuilder builder, int i) {
+                builder.append("LIST n = [").append(i).append(", -").append(i * 31 % 1000).append(", ")
+                        .append(i % 100).append('.').append(i % 7).append("25, -0.").append(i % 1000)
+                        .append(", 1234567890, 0];\n");
+            }
+        },
+
+        /**
+         * Strings and characters, many of them with escapes.
+         */
+        STRINGS {
+            @Override
+            void append(StringBuilder builder, int i) {
+                builder.append("print(\"line ").append(i).append(":\\tvalue\\nnext \\\"quoted\\\" text\", ")
+                        .append("'\\n', 'c', \"plain string without escapes\");\n");
+            }
+        },
+
+        /**
+         * Arithmetic and comparisons with short operands, mostly operators.
+         */
+        OPERATORS {
+            @Override
+            void append(StringBuilder builder, int i) {
+                builder.append("x=(a+b)*c+(d/e);y=!(p&&q||r)!=(s==t);z=a<b&&c>=d||e<=f;\n");
+            }
+        };
+
+        abstract void append(StringBuilder builder, int i);
+
+        String generate(int size) {
+            StringBuilder builder = new StringBuilder(size + 128);
+            for (int i = 0; builder.length() < size; i++) {
+                append(builder, i);
+            }
+            builder.setLength(builder.lastIndexOf("\n", size - 1) + 1);
+            while (builder.length() < size) {
+                builder.append('\n');
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
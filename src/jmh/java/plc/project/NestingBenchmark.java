@@ -0,0 +1,114 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing deeply nested programs, which must not overflow the stack
+ * and should take time linear in the depth: the time per op at each depth
+ * should grow by the same factor as the depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NestingBenchmark {
+
+    @Param({"PARENTHESES", "CALLS", "BLOCKS"})
+    public Shape shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int depth;
+
+    private List<Token> tokens;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tokens = new Lexer(shape.generate(depth)).lex();
+    }
+
+    @Benchmark
+    public Ast.Source parse() {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * The kinds of nesting, each wrapped in a function so the whole source is
+     * parsed.
+     */
+    public enum Shape {
+
+        /**
+         * Nested groups, {@code (((1 + 1) + 1) + 1)}.
+         */
+        PARENTHESES {
+            @Override
+            void append(StringBuilder builder, int depth) {
+                builder.append("x = ");
+                repeat(builder, "(", depth);
+                builder.append('1');
+                repeat(builder, " + 1)", depth);
+                builder.append(";\n");
+            }
+        },
+
+        /**
+         * Nested calls and offsets, {@code f(list[f(list[1])])}.
+         */
+        CALLS {
+            @Override
+            void append(StringBuilder builder, int depth) {
+                builder.append("x = ");
+                repeat(builder, "f(list[", depth);
+                builder.append('1');
+                repeat(builder, "])", depth);
+                builder.append(";\n");
+            }
+        },
+
+        /**
+         * Nested if and while statements, alternating.
+         */
+        BLOCKS {
+            @Override
+            void append(StringBuilder builder, int depth) {
+                for (int i = 0; i < depth; i++) {
+                    builder.append(i % 2 == 0 ? "IF x DO\n" : "WHILE x DO\n");
+                }
+                builder.append("x = 1;\n");
+                repeat(builder, "END\n", depth);
+            }
+        };
+
+        abstract void append(StringBuilder builder, int depth);
+
+        String generate(int depth) {
+            StringBuilder builder = new StringBuilder("FUN main() DO\n");
+            append(builder, depth);
+            return builder.append("END\n").toString();
+        }
+
+        private static void repeat(StringBuilder builder, String string, int count) {
+            for (int i = 0; i < count; i++) {
+                builder.append(string);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Parser#parseSource()} on generated programs, from already
+ * lexed tokens so only the parser is measured. Besides the JMH score, each run
+ * reports {@code tokens} (tokens/s) as a secondary result. {@code
+ * parseParallel} uses the common pool, so its speedup over {@code parseList}
+ * depends on the number of cores. {@code parseSpans} is {@code parseBuffer}
+ * also recording a {@link SpanTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParserBenchmark {
+
+    @Param({"1KB", "1MB", "20MB"})
+    public String size;
+
+    private List<Token> list;
+    private TokenBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String input = Programs.generate(Programs.parseSize(size));
+        list = new Lexer(input).lex();
+        buffer = new Lexer(input).lexBuffer();
+    }
+
+    @Benchmark
+    public Ast.Source parseList(Counters counters) {
+        Ast.Source result = new Parser(list).parseSource();
+        counters.tokens += list.size();
+        return result;
+    }
+
+    @Benchmark
+    public Ast.Source parseBuffer(Counters counters) {
+        Ast.Source result = new Parser(buffer).parseSource();
+        counters.tokens += buffer.size();
+        return result;
+    }
+
+    @Benchmark
+    public Ast.Source parseCompact(Counters counters) {
+        Parser parser = new Parser(buffer);
+        parser.setCompact(true);
+        Ast.Source result = parser.parseSource();
+        counters.tokens += buffer.size();
+        return result;
+    }
+
+    @Benchmark
+    public Ast.Source parseSpans(Counters counters) {
+        Parser parser = new Parser(buffer);
+        parser.setSpans(new SpanTable());
+        Ast.Source result = parser.parseSource();
+        counters.tokens += buffer.size();
+        return result;
+    }
+
+    @Benchmark
+    public Ast.Source parseParallel(Counters counters) {
+        Ast.Source result = new Parser(list).parseSourceParallel();
+        counters.tokens += list.size();
+        return result;
+    }
+
+    /**
+     * The secondary results of a run, reported by JMH as rates per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+
+    }
+
+}
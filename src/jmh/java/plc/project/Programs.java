@@ -0,0 +1,60 @@
+package plc.project;
+
+/**
+ * Generates synthetic programs for the benchmarks which lex and parse
+ * successfully, built from globals followed by functions using each kind of
+ * statement and expression the parser handles.
+ */
+final class Programs {
+
+    private Programs() {}
+
+    /**
+     * Parses a size such as {@code "1KB"} or {@code "50MB"} into a number of
+     * characters.
+     */
+    static int parseSize(String size) {
+        if (size.endsWith("KB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) << 10;
+        } else if (size.endsWith("MB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) << 20;
+        }
+        return Integer.parseInt(size);
+    }
+
+    /**
+     * Returns a program of at least the given number of characters, which
+     * always contains the globals and at least one function.
+     */
+    static String generate(int size) {
+        StringBuilder builder = new StringBuilder(size + 512);
+        builder.append("VAR count: Integer = 0;\n");
+        builder.append("VAL name: String = \"program\";\n");
+        builder.append("LIST values: Integer = [1, 2, 3, -4, 5];\n");
+        for (int i = 0; i == 0 || builder.length() < size; i++) {
+            appendFunction(builder, i);
+        }
+        return builder.toString();
+    }
+
+    private static void appendFunction(StringBuilder builder, int i) {
+        builder.append("FUN function").append(i).append("(a: Integer, b: Decimal): Integer DO\n")
+                .append("    LET x: Integer = a * (values[").append(i % 5).append("] + ").append(i).append(") - 3;\n")
+                .append("    LET y = b \\ 2.5 ^ 2;\n")
+                .append("    LET c: Character = 'c';\n")
+                .append("    IF x > 10 != (a == b) DO\n")
+                .append("        x = x - 1;\n")
+                .append("        print(\"greater\", x, TRUE);\n")
+                .append("    ELSE\n")
+                .append("        x = function").append(i).append("(x + 1, b) + count;\n")
+                .append("    END\n")
+                .append("    WHILE x < 100 DO\n")
+                .append("        x = x + a * 2;\n")
+                .append("        values[0] = x;\n")
+                .append("    END\n")
+                .append("    log(name, NIL, FALSE);\n")
+                .append("    RETURN x + y;\n")
+                .append("END\n");
+    }
+
+}
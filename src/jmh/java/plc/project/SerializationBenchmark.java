@@ -0,0 +1,67 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading a generated program with {@link AstSerializer#read} to
+ * lexing and parsing it again, and measures {@link AstSerializer#write}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmark {
+
+    @Param({"1KB", "1MB", "20MB"})
+    public String size;
+
+    private String input;
+    private Ast.Source source;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        input = Programs.generate(Programs.parseSize(size));
+        source = new Parser(new Lexer(input).lex()).parseSource();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AstSerializer.write(source, Channels.newChannel(output));
+        bytes = output.toByteArray();
+    }
+
+    @Benchmark
+    public Ast.Source parse() {
+        return new Parser(new Lexer(input).lexBuffer()).parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source read() throws IOException {
+        return AstSerializer.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length);
+        AstSerializer.write(source, Channels.newChannel(output));
+        return output.size();
+    }
+
+}
@@ -15,6 +15,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     public Scope scope;
     private Ast.Function function;
+    private SpanTable spans;
 
     public Analyzer(Scope parent) {
         scope = new Scope(parent);
@@ -25,6 +26,27 @@ public final class Analyzer implements Ast.Visitor<Void> {
         return scope;
     }
 
+    /**
+     * Sets the spans of the nodes being analyzed, so that an error is thrown
+     * as a {@link SourceException} locating the innermost node it occurred
+     * in (see {@link SpanTable#locate(RuntimeException, Ast)}).
+     */
+    public void setSpans(SpanTable spans) {
+        this.spans = spans;
+    }
+
+    @Override
+    public Void visit(Ast ast) {
+        if (spans == null) {
+            return ast.accept(this);
+        }
+        try {
+            return ast.accept(this);
+        } catch (RuntimeException e) {
+            throw spans.locate(e, ast);
+        }
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
 
@@ -35,10 +57,11 @@ public final class Analyzer implements Ast.Visitor<Void> {
             throw new RuntimeException("Main function incorrect");
         }
 
-        for (Ast.Global global: ast.getGlobals()) {
+        // declarations go through visit(Ast) so their errors are located
+        for (Ast global: ast.getGlobals()) {
             visit(global);
         }
-        for (Ast.Function function: ast.getFunctions()) {
+        for (Ast function: ast.getFunctions()) {
             visit(function);
         }
 
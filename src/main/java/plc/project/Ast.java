@@ -11,6 +11,8 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    public abstract <T> T accept(Visitor<T> visitor);
+
     public static final class Source extends Ast {
 
         private final List<Global> globals;
@@ -29,6 +31,11 @@ public abstract class Ast {
             return functions;
         }
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Source &&
@@ -51,7 +58,7 @@ public abstract class Ast {
         private final String name;
         private final String typeName;
         private final boolean mutable;
-        private final Optional<Ast.Expression> value;
+        private final Ast.Expression value;
         private Environment.Variable variable = null;
 
         public Global(String name, boolean mutable, Optional<Expression> value) {
@@ -62,7 +69,7 @@ public abstract class Ast {
             this.name = name;
             this.typeName = typeName;
             this.mutable = mutable;
-            this.value = value;
+            this.value = value.orElse(null);
         }
 
 
@@ -79,7 +86,7 @@ public abstract class Ast {
         }
 
         public Optional<Ast.Expression> getValue() {
-            return value;
+            return Optional.ofNullable(value);
         }
 
         public Environment.Variable getVariable() {
@@ -89,18 +96,27 @@ public abstract class Ast {
             return variable;
         }
 
+        Environment.Variable findVariable() {
+            return variable;
+        }
+
         public void setVariable(Environment.Variable variable) {
             this.variable = variable;
         }
 
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Global &&
                     name.equals(((Global) obj).name) &&
                     typeName.equals(((Global) obj).typeName) &&
                     mutable == ((Global) obj).mutable &&
-                    value.equals(((Global) obj).value) &&
+                    Objects.equals(value, ((Global) obj).value) &&
                     Objects.equals(variable, ((Global) obj).variable);
         }
 
@@ -110,7 +126,7 @@ public abstract class Ast {
                     "name='" + name + '\'' +
                     ", typeName=" + typeName +
                     ", mutable=" + mutable +
-                    ", value=" + value +
+                    ", value=" + getValue() +
                     ", variable=" + variable +
                     '}';
         }
@@ -122,7 +138,7 @@ public abstract class Ast {
         private final String name;
         private final List<String> parameters;
         private final List<String> parameterTypeNames;
-        private final Optional<String> returnTypeName;
+        private final String returnTypeName;
         private final List<Statement> statements;
         private Environment.Function function = null;
         
@@ -138,7 +154,7 @@ public abstract class Ast {
             this.name = name;
             this.parameters = parameters;
             this.parameterTypeNames = parameterTypeNames;
-            this.returnTypeName = returnTypeName;
+            this.returnTypeName = returnTypeName.orElse(null);
             this.statements = statements;
         }
 
@@ -155,7 +171,7 @@ public abstract class Ast {
         }
 
         public Optional<String> getReturnTypeName() {
-            return returnTypeName;
+            return Optional.ofNullable(returnTypeName);
         }
 
         public List<Statement> getStatements() {
@@ -169,18 +185,27 @@ public abstract class Ast {
             return function;
         }
 
+        Environment.Function findFunction() {
+            return function;
+        }
+
         public void setFunction(Environment.Function function) {
             this.function = function;
         }
 
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Ast.Function &&
                     name.equals(((Ast.Function) obj).name) &&
                     parameters.equals(((Ast.Function) obj).parameters) &&
                     parameterTypeNames.equals(((Ast.Function) obj).parameterTypeNames) &&
-                    returnTypeName.equals(((Ast.Function) obj).returnTypeName) &&
+                    Objects.equals(returnTypeName, ((Ast.Function) obj).returnTypeName) &&
                     statements.equals(((Ast.Function) obj).statements) &&
                     Objects.equals(function, ((Ast.Function) obj).function);
         }
@@ -192,7 +217,7 @@ public abstract class Ast {
                     "name='" + name + '\'' +
                     ", parameters=" + parameters +
                     ", parameterTypeNames=" + parameterTypeNames +
-                    ", returnTypeName='" + returnTypeName + '\'' +
+                    ", returnTypeName='" + getReturnTypeName() + '\'' +
                     ", statements=" + statements +
                     ", function=" + function +
                     '}';
@@ -214,6 +239,11 @@ public abstract class Ast {
                 return expression;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Statement.Expression &&
@@ -232,8 +262,8 @@ public abstract class Ast {
         public static final class Declaration extends Statement {
 
             private String name;
-            private final Optional<String> typeName;
-            private Optional<Ast.Expression> value;
+            private final String typeName;
+            private Ast.Expression value;
             private Environment.Variable variable = null;
 
             public Declaration(String name, Optional<Ast.Expression> value) {
@@ -242,8 +272,8 @@ public abstract class Ast {
 
             public Declaration(String name, Optional<String> typeName, Optional<Ast.Expression> value) {
                 this.name = name;
-                this.typeName = typeName;
-                this.value = value;
+                this.typeName = typeName.orElse(null);
+                this.value = value.orElse(null);
             }
 
             public String getName() {
@@ -251,11 +281,11 @@ public abstract class Ast {
             }
 
             public Optional<String> getTypeName() {
-                return typeName;
+                return Optional.ofNullable(typeName);
             }
 
             public Optional<Ast.Expression> getValue() {
-                return value;
+                return Optional.ofNullable(value);
             }
 
             public Environment.Variable getVariable() {
@@ -265,17 +295,26 @@ public abstract class Ast {
                 return variable;
             }
 
+            Environment.Variable findVariable() {
+                return variable;
+            }
+
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
             
             
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
                         name.equals(((Declaration) obj).name) &&
-                        typeName.equals(((Declaration) obj).typeName) &&
-                        value.equals(((Declaration) obj).value) &&
+                        Objects.equals(typeName, ((Declaration) obj).typeName) &&
+                        Objects.equals(value, ((Declaration) obj).value) &&
                         Objects.equals(variable, ((Declaration) obj).variable);
             }
 
@@ -283,8 +322,8 @@ public abstract class Ast {
             public String toString() {
                 return "Ast.Statement.Declaration{" +
                         "name='" + name + '\'' +
-                        ", typeName=" + typeName +
-                        ", value=" + value +
+                        ", typeName=" + getTypeName() +
+                        ", value=" + getValue() +
                         ", variable=" + variable +
                         '}';
             }
@@ -309,6 +348,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
@@ -351,6 +395,11 @@ public abstract class Ast {
                 return elseStatements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof If &&
@@ -386,6 +435,11 @@ public abstract class Ast {
 
             public List<Ast.Statement.Case> getCases() { return cases; }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Switch &&
@@ -405,33 +459,38 @@ public abstract class Ast {
 
         public static final class Case extends Statement {
 
-            private final Optional<Ast.Expression> value;
+            private final Ast.Expression value;
             private final List<Statement> statements;
 
             public Case(Optional<Ast.Expression> value, List<Statement> statements) {
-                this.value = value;
+                this.value = value.orElse(null);
                 this.statements = statements;
             }
 
             public Optional<Ast.Expression> getValue() {
-                return value;
+                return Optional.ofNullable(value);
             }
 
             public List<Statement> getStatements() {
                 return statements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Case &&
-                        value.equals(((Case) obj).value) &&
+                        Objects.equals(value, ((Case) obj).value) &&
                         statements.equals(((Case) obj).statements);
             }
 
             @Override
             public String toString() {
                 return "Ast.Statement.Case{" +
-                        "value=" + value +
+                        "value=" + getValue() +
                         ", statements=" + statements +
                         '}';
             }
@@ -456,6 +515,11 @@ public abstract class Ast {
                 return statements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
@@ -485,6 +549,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -508,6 +577,10 @@ public abstract class Ast {
 
         public static final class Literal extends Ast.Expression {
 
+            static final Literal TRUE = new Literal(Boolean.TRUE, Environment.Type.BOOLEAN);
+            static final Literal FALSE = new Literal(Boolean.FALSE, Environment.Type.BOOLEAN);
+            static final Literal NIL = new Literal(null, Environment.Type.NIL);
+
             private final Object literal;
             private Environment.Type type = null;
             
@@ -515,6 +588,11 @@ public abstract class Ast {
                 this.literal = literal;
             }
 
+            private Literal(Object literal, Environment.Type type) {
+                this.literal = literal;
+                this.type = type;
+            }
+
             public Object getLiteral() {
                 return literal;
             }
@@ -527,12 +605,27 @@ public abstract class Ast {
                 return type;
             }
 
+            Environment.Type findType() {
+                return type;
+            }
+
             public void setType(Environment.Type type) {
+                if (this == TRUE || this == FALSE || this == NIL) {
+                    if (type != this.type) {
+                        throw new IllegalStateException("type of a shared literal is fixed");
+                    }
+                    return;
+                }
                 this.type = type;
             }
 
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Literal &&
@@ -571,11 +664,20 @@ public abstract class Ast {
                 return type;
             }
 
+            Environment.Type findType() {
+                return type;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Group &&
@@ -627,10 +729,19 @@ public abstract class Ast {
                 return type;
             }
 
+            Environment.Type findType() {
+                return type;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -655,17 +766,17 @@ public abstract class Ast {
 
         public static final class Access extends Ast.Expression {
 
-            private final Optional<Ast.Expression> offset;
+            private final Ast.Expression offset;
             private final String name;
             private Environment.Variable variable = null;
 
             public Access(Optional<Ast.Expression> offset, String name) {
-                this.offset = offset;
+                this.offset = offset.orElse(null);
                 this.name = name;
             }
 
             public Optional<Ast.Expression> getOffset() {
-                return offset;
+                return Optional.ofNullable(offset);
             }
 
             public String getName() {
@@ -679,6 +790,10 @@ public abstract class Ast {
                 return variable;
             }
 
+            Environment.Variable findVariable() {
+                return variable;
+            }
+
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
@@ -688,10 +803,15 @@ public abstract class Ast {
                 return getVariable().getType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
-                        offset.equals(((Access) obj).offset) &&
+                        Objects.equals(offset, ((Access) obj).offset) &&
                         name.equals(((Access) obj).name) &&
                         Objects.equals(variable, ((Access) obj).variable);
             }
@@ -700,7 +820,7 @@ public abstract class Ast {
             @Override
             public String toString() {
                 return "Ast.Expression.Access{" +
-                        "offset=" + offset +
+                        "offset=" + getOffset() +
                         ", name='" + name + '\'' +
                         ", variable=" + variable +
                         '}';
@@ -734,6 +854,10 @@ public abstract class Ast {
                 return function;
             }
 
+            Environment.Function findFunction() {
+                return function;
+            }
+
             public void setFunction(Environment.Function function) {
                 this.function = function;
             }
@@ -743,6 +867,11 @@ public abstract class Ast {
                 return getFunction().getReturnType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.Function &&
@@ -784,10 +913,19 @@ public abstract class Ast {
                 return type;
             }
 
+            Environment.Type findType() {
+                return type;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.PlcList &&
@@ -810,43 +948,7 @@ public abstract class Ast {
     public interface Visitor<T> {
 
         default T visit(Ast ast) {
-            if (ast instanceof Ast.Source) {
-                return visit((Ast.Source) ast);
-            } else if (ast instanceof Ast.Global) {
-                return visit((Ast.Global) ast);
-            } else if (ast instanceof Ast.Function) {
-                return visit((Ast.Function) ast);
-            } else if (ast instanceof Ast.Statement.Expression) {
-                return visit((Ast.Statement.Expression) ast);
-            } else if (ast instanceof Ast.Statement.Declaration) {
-                return visit((Ast.Statement.Declaration) ast);
-            } else if (ast instanceof Ast.Statement.Assignment) {
-                return visit((Ast.Statement.Assignment) ast);
-            } else if (ast instanceof Ast.Statement.If) {
-                return visit((Ast.Statement.If) ast);
-            } else if (ast instanceof Ast.Statement.Switch) {
-                return visit((Ast.Statement.Switch) ast);
-            } else if (ast instanceof Ast.Statement.Case) {
-                return visit((Ast.Statement.Case) ast);
-            } else if (ast instanceof Ast.Statement.While) {
-                return visit((Ast.Statement.While) ast);
-            } else if (ast instanceof Ast.Statement.Return) {
-                return visit((Ast.Statement.Return) ast);
-            } else if (ast instanceof Ast.Expression.Literal) {
-                return visit((Ast.Expression.Literal) ast);
-            } else if (ast instanceof Ast.Expression.Group) {
-                return visit((Ast.Expression.Group) ast);
-            } else if (ast instanceof Ast.Expression.Binary) {
-                return visit((Ast.Expression.Binary) ast);
-            } else if (ast instanceof Ast.Expression.Access) {
-                return visit((Ast.Expression.Access) ast);
-            } else if (ast instanceof Ast.Expression.Function) {
-                return visit((Ast.Expression.Function) ast);
-            } else if (ast instanceof Ast.Expression.PlcList) {
-                return visit((Ast.Expression.PlcList) ast);
-            } else {
-                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
-            }
+            return ast.accept(this);
         }
 
         T visit(Ast.Source ast);
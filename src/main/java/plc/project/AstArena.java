@@ -0,0 +1,783 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A flat representation of an {@link Ast.Source} for very large programs,
+ * where each node is a row in a set of primitive arrays addressed by an int
+ * handle instead of an object, so the garbage collector sees a few large
+ * arrays rather than millions of small objects. {@link
+ * Parser#parseArena()} parses directly into an arena one declaration at a
+ * time, and {@link #of(Ast.Source)} converts an existing tree.
+ *
+ * Rows are in pre-order, so the subtree of a node is the range of handles
+ * from the node to {@link #getEnd(int)} and the root is {@link #ROOT}. The
+ * children of a node are linked through {@link #getFirstChild(int)} and
+ * {@link #getNextSibling(int)}:
+ *
+ * <pre>{@code
+ * for (int child = arena.getFirstChild(node); child != AstArena.NONE; child = arena.getNextSibling(child)) {
+ *     ...
+ * }
+ * }</pre>
+ *
+ * and the nodes of a kind anywhere in a subtree are found by scanning its
+ * range in order, which neither allocates nor follows pointers.
+ *
+ * The children of each kind are in the same order as in {@link
+ * AstSerializer}, with an optional child (such as the value of a global)
+ * simply missing if absent. Names, operators, literals and type names are
+ * stored once in a table and referenced by each row which uses them.
+ *
+ * Tools written against {@link Ast.Visitor}, such as the {@link Analyzer},
+ * {@link Interpreter} and {@link Generator}, run over a subtree through
+ * {@link #accept(int, Ast.Visitor)}, which builds the objects of just that
+ * subtree. The types, variables and functions set by the visitor are then
+ * stored back in the arena, and set again on the objects whenever a subtree is
+ * built.
+ *
+ * Visiting is therefore not allocation-free: the objects of the visited
+ * subtree exist while it is visited. For the root, the source given to the
+ * visitor builds each global and function only when the visitor gets it from
+ * the list and drops it at the next one, so only one declaration exists as
+ * objects at a time, as with {@link Parser#parseArena()}. A visitor may still
+ * keep declarations alive itself; the {@link Interpreter} holds every function
+ * it defines until it is done, since it runs them later.
+ */
+public final class AstArena {
+
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+
+    public static final int SOURCE = 0;
+    public static final int GLOBAL = 1;
+    public static final int FUNCTION = 2;
+    public static final int EXPRESSION = 3;
+    public static final int DECLARATION = 4;
+    public static final int ASSIGNMENT = 5;
+    public static final int IF = 6;
+    public static final int SWITCH = 7;
+    public static final int CASE = 8;
+    public static final int WHILE = 9;
+    public static final int RETURN = 10;
+    public static final int LITERAL = 11;
+    public static final int GROUP = 12;
+    public static final int BINARY = 13;
+    public static final int ACCESS = 14;
+    public static final int CALL = 15;
+    public static final int LIST = 16;
+
+    private byte[] kinds = new byte[64];
+    private int[] firstChildren = new int[64];
+    private int[] nextSiblings = new int[64];
+    private int[] ends = new int[64];
+    private int[] offsets = new int[64];
+    private int[] types = new int[64];
+    private int[] values = new int[64];
+    private int[] extras = new int[64];
+    private int[] data = new int[64];
+    private Object[] references;
+    private int size = 0;
+
+    /**
+     * The values referenced by rows, with null at 0. Every value other than a
+     * signature is only stored once.
+     */
+    private final List<Object> table = new ArrayList<>();
+    private final Map<Object, Integer> tableIds = new HashMap<>();
+    private final List<Environment.Type> typeTable = new ArrayList<>();
+    private final Map<Environment.Type, Integer> typeIds = new IdentityHashMap<>();
+
+    /**
+     * Creates an arena holding an empty source.
+     */
+    AstArena() {
+        table.add(null);
+        typeTable.add(null);
+        row(SOURCE, NONE, 0);
+    }
+
+    /**
+     * Converts the given source into an arena, whose offsets are unknown.
+     */
+    public static AstArena of(Ast.Source source) {
+        return of(source, null);
+    }
+
+    /**
+     * Converts the given source into an arena, taking the offset of each node
+     * from the start of its span (if the spans are not null).
+     */
+    public static AstArena of(Ast.Source source, SpanTable spans) {
+        AstArena arena = new AstArena();
+        if (spans != null && spans.contains(source)) {
+            arena.offsets[ROOT] = spans.getStart(source);
+        }
+        for (Ast.Global global : source.getGlobals()) {
+            arena.add(global, spans);
+        }
+        for (Ast.Function function : source.getFunctions()) {
+            arena.add(function, spans);
+        }
+        return arena;
+    }
+
+    /**
+     * Adds a global or function to the source, after all previous ones, with
+     * offsets from the spans if not null. All globals must be added before any
+     * function.
+     */
+    void add(Ast declaration, SpanTable spans) {
+        if (declaration instanceof Ast.Global) {
+            data[ROOT]++;
+        }
+        append(declaration, ROOT, spans);
+    }
+
+    void setOffset(int node, int offset) {
+        offsets[node] = offset;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int node) {
+        checkNode(node);
+        return kinds[node];
+    }
+
+    /**
+     * Returns the first child of the node, or {@link #NONE}.
+     */
+    public int getFirstChild(int node) {
+        checkNode(node);
+        return firstChildren[node];
+    }
+
+    /**
+     * Returns the next child of the parent of the node, or {@link #NONE}.
+     */
+    public int getNextSibling(int node) {
+        checkNode(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * Returns the handle after the last node in the subtree of the node.
+     */
+    public int getEnd(int node) {
+        checkNode(node);
+        return node == ROOT ? size : ends[node];
+    }
+
+    /**
+     * Returns the index of the first character of the node in the source, or
+     * -1 if it is unknown. Every node from {@link Parser#parseArena()} has an
+     * offset other than the shared literals of a compact AST, and nodes from
+     * {@link #of(Ast.Source, SpanTable)} have those in the spans.
+     */
+    public int getOffset(int node) {
+        checkNode(node);
+        return offsets[node];
+    }
+
+    /**
+     * Returns the value of the node: the name of a global, function,
+     * declaration, access or call, the operator of a binary expression, or the
+     * value of a literal. Other nodes have a null value.
+     */
+    public Object getValue(int node) {
+        checkNode(node);
+        return table.get(values[node]);
+    }
+
+    /**
+     * Returns the integer data of the node: the number of globals of the
+     * source, the number of then statements of an if statement, and 1 for a
+     * mutable global or a case with a value. Other nodes have 0.
+     */
+    public int getData(int node) {
+        checkNode(node);
+        return data[node];
+    }
+
+    /**
+     * Returns the type of the expression at the node set by analysis, or null
+     * if it was not analyzed (or is not an expression).
+     */
+    public Environment.Type getType(int node) {
+        checkNode(node);
+        switch (kinds[node]) {
+            case ACCESS:
+                Environment.Variable variable = (Environment.Variable) getReference(node);
+                return variable != null ? variable.getType() : null;
+            case CALL:
+                Environment.Function function = (Environment.Function) getReference(node);
+                return function != null ? function.getReturnType() : null;
+            default:
+                return typeTable.get(types[node]);
+        }
+    }
+
+    /**
+     * Builds the objects of the subtree of the node, which are new objects on
+     * each call.
+     */
+    public Ast get(int node) {
+        checkNode(node);
+        return build(node)[0];
+    }
+
+    /**
+     * Visits the objects of the subtree of the node, as built by {@link
+     * #get(int)}, and then stores the types, variables and functions set on
+     * them in the arena. The root is visited as a source building one
+     * declaration at a time instead, see the class documentation.
+     */
+    public <T> T accept(int node, Ast.Visitor<T> visitor) {
+        checkNode(node);
+        if (node == ROOT) {
+            int count = 0;
+            for (int child = firstChildren[ROOT]; child != NONE; child = nextSiblings[child]) {
+                count++;
+            }
+            int[] handles = new int[count];
+            for (int i = 0, child = firstChildren[ROOT]; i < count; i++, child = nextSiblings[child]) {
+                handles[i] = child;
+            }
+            Cursor cursor = new Cursor();
+            List<Ast.Global> globals = new Declarations<>(Arrays.copyOfRange(handles, 0, data[ROOT]), cursor);
+            List<Ast.Function> functions = new Declarations<>(Arrays.copyOfRange(handles, data[ROOT], count), cursor);
+            try {
+                return visitor.visit(new Ast.Source(globals, functions));
+            } finally {
+                cursor.drop();
+            }
+        }
+        Ast[] objects = build(node);
+        try {
+            return visitor.visit(objects[0]);
+        } finally {
+            for (int i = 0; i < objects.length; i++) {
+                store(node + i, objects[i]);
+            }
+        }
+    }
+
+    /**
+     * Visits the whole source, see {@link #accept(int, Ast.Visitor)}.
+     */
+    public <T> T accept(Ast.Visitor<T> visitor) {
+        return accept(ROOT, visitor);
+    }
+
+    /**
+     * Appends the subtree of the node as the next child of the parent. The
+     * end of a node holds its last child so far until its subtree is done,
+     * which for the root is never, since {@link #getEnd(int)} of the root is
+     * the size.
+     */
+    private void append(Ast root, int parent, SpanTable spans) {
+        // each entry is a node to add along with its parent, or null along
+        // with a node whose subtree is done
+        Ast[] nodes = new Ast[16];
+        int[] handles = new int[16];
+        int depth = 0;
+        List<Ast> children = new ArrayList<>();
+        nodes[depth] = root;
+        handles[depth++] = parent;
+        while (depth > 0) {
+            Ast ast = nodes[--depth];
+            if (ast == null) {
+                ends[handles[depth]] = size;
+                continue;
+            }
+            int node = addNode(ast, handles[depth]);
+            if (spans != null) {
+                offsets[node] = spans.getStart(ast);
+            }
+            children.clear();
+            addChildren(ast, children);
+            if (depth + children.size() + 1 > nodes.length) {
+                int capacity = Math.max(nodes.length * 2, depth + children.size() + 1);
+                nodes = Arrays.copyOf(nodes, capacity);
+                handles = Arrays.copyOf(handles, capacity);
+            }
+            nodes[depth] = null;
+            handles[depth++] = node;
+            for (int i = children.size() - 1; i >= 0; i--) {
+                nodes[depth] = children.get(i);
+                handles[depth++] = node;
+            }
+        }
+    }
+
+    /**
+     * Adds the row of the node itself as the next child of the parent.
+     */
+    private int addNode(Ast ast, int parent) {
+        if (ast instanceof Ast.Global) {
+            Ast.Global global = (Ast.Global) ast;
+            int node = row(GLOBAL, parent, id(global.getName()));
+            extras[node] = id(global.getTypeName());
+            data[node] = global.getMutable() ? 1 : 0;
+            reference(node, global.findVariable());
+            return node;
+        } else if (ast instanceof Ast.Function) {
+            Ast.Function function = (Ast.Function) ast;
+            int node = row(FUNCTION, parent, id(function.getName()));
+            table.add(new Signature(ImmutableList.copyOf(function.getParameters()),
+                    ImmutableList.copyOf(function.getParameterTypeNames()), function.getReturnTypeName().orElse(null)));
+            extras[node] = table.size() - 1;
+            reference(node, function.findFunction());
+            return node;
+        } else if (ast instanceof Ast.Statement.Expression) {
+            return row(EXPRESSION, parent, 0);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+            int node = row(DECLARATION, parent, id(declaration.getName()));
+            extras[node] = id(declaration.getTypeName().orElse(null));
+            reference(node, declaration.findVariable());
+            return node;
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            return row(ASSIGNMENT, parent, 0);
+        } else if (ast instanceof Ast.Statement.If) {
+            int node = row(IF, parent, 0);
+            data[node] = ((Ast.Statement.If) ast).getThenStatements().size();
+            return node;
+        } else if (ast instanceof Ast.Statement.Switch) {
+            return row(SWITCH, parent, 0);
+        } else if (ast instanceof Ast.Statement.Case) {
+            int node = row(CASE, parent, 0);
+            data[node] = ((Ast.Statement.Case) ast).getValue().isPresent() ? 1 : 0;
+            return node;
+        } else if (ast instanceof Ast.Statement.While) {
+            return row(WHILE, parent, 0);
+        } else if (ast instanceof Ast.Statement.Return) {
+            return row(RETURN, parent, 0);
+        } else if (ast instanceof Ast.Expression.Literal) {
+            Ast.Expression.Literal literal = (Ast.Expression.Literal) ast;
+            int node = row(LITERAL, parent, id(literal.getLiteral()));
+            types[node] = typeId(literal.findType());
+            return node;
+        } else if (ast instanceof Ast.Expression.Group) {
+            int node = row(GROUP, parent, 0);
+            types[node] = typeId(((Ast.Expression.Group) ast).findType());
+            return node;
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            int node = row(BINARY, parent, id(binary.getOperator()));
+            types[node] = typeId(binary.findType());
+            return node;
+        } else if (ast instanceof Ast.Expression.Access) {
+            Ast.Expression.Access access = (Ast.Expression.Access) ast;
+            int node = row(ACCESS, parent, id(access.getName()));
+            reference(node, access.findVariable());
+            return node;
+        } else if (ast instanceof Ast.Expression.Function) {
+            Ast.Expression.Function function = (Ast.Expression.Function) ast;
+            int node = row(CALL, parent, id(function.getName()));
+            reference(node, function.findFunction());
+            return node;
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            int node = row(LIST, parent, 0);
+            types[node] = typeId(((Ast.Expression.PlcList) ast).findType());
+            return node;
+        }
+        throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+    }
+
+    /**
+     * Adds the children of the node in the order of their rows.
+     */
+    private static void addChildren(Ast ast, List<Ast> children) {
+        if (ast instanceof Ast.Global) {
+            ((Ast.Global) ast).getValue().ifPresent(children::add);
+        } else if (ast instanceof Ast.Function) {
+            children.addAll(((Ast.Function) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Expression) {
+            children.add(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(children::add);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            children.add(((Ast.Statement.Assignment) ast).getReceiver());
+            children.add(((Ast.Statement.Assignment) ast).getValue());
+        } else if (ast instanceof Ast.Statement.If) {
+            children.add(((Ast.Statement.If) ast).getCondition());
+            children.addAll(((Ast.Statement.If) ast).getThenStatements());
+            children.addAll(((Ast.Statement.If) ast).getElseStatements());
+        } else if (ast instanceof Ast.Statement.Switch) {
+            children.add(((Ast.Statement.Switch) ast).getCondition());
+            children.addAll(((Ast.Statement.Switch) ast).getCases());
+        } else if (ast instanceof Ast.Statement.Case) {
+            ((Ast.Statement.Case) ast).getValue().ifPresent(children::add);
+            children.addAll(((Ast.Statement.Case) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.While) {
+            children.add(((Ast.Statement.While) ast).getCondition());
+            children.addAll(((Ast.Statement.While) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Return) {
+            children.add(((Ast.Statement.Return) ast).getValue());
+        } else if (ast instanceof Ast.Expression.Group) {
+            children.add(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            children.add(((Ast.Expression.Binary) ast).getLeft());
+            children.add(((Ast.Expression.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).getOffset().ifPresent(children::add);
+        } else if (ast instanceof Ast.Expression.Function) {
+            children.addAll(((Ast.Expression.Function) ast).getArguments());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            children.addAll(((Ast.Expression.PlcList) ast).getValues());
+        }
+    }
+
+    /**
+     * Adds a row linked as the next child of the parent, whose end holds its
+     * last child so far.
+     */
+    private int row(int kind, int parent, int value) {
+        if (size == kinds.length) {
+            grow();
+        }
+        int node = size++;
+        kinds[node] = (byte) kind;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        ends[node] = NONE;
+        offsets[node] = -1;
+        values[node] = value;
+        if (parent != NONE) {
+            if (ends[parent] == NONE) {
+                firstChildren[parent] = node;
+            } else {
+                nextSiblings[ends[parent]] = node;
+            }
+            ends[parent] = node;
+        }
+        return node;
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        types = Arrays.copyOf(types, capacity);
+        values = Arrays.copyOf(values, capacity);
+        extras = Arrays.copyOf(extras, capacity);
+        data = Arrays.copyOf(data, capacity);
+        if (references != null) {
+            references = Arrays.copyOf(references, capacity);
+        }
+    }
+
+    /**
+     * Returns the id of the value in the table, adding it if needed.
+     */
+    private int id(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer id = tableIds.get(value);
+        if (id == null) {
+            id = table.size();
+            table.add(value);
+            tableIds.put(value, id);
+        }
+        return id;
+    }
+
+    private int typeId(Environment.Type type) {
+        if (type == null) {
+            return 0;
+        }
+        Integer id = typeIds.get(type);
+        if (id == null) {
+            id = typeTable.size();
+            typeTable.add(type);
+            typeIds.put(type, id);
+        }
+        return id;
+    }
+
+    private Object getReference(int node) {
+        return references != null ? references[node] : null;
+    }
+
+    private void reference(int node, Object reference) {
+        if (references == null) {
+            if (reference == null) {
+                return;
+            }
+            references = new Object[kinds.length];
+        }
+        references[node] = reference;
+    }
+
+    /**
+     * Builds the objects of the subtree of the node, indexed by their handle
+     * minus the node.
+     */
+    private Ast[] build(int node) {
+        Ast[] objects = new Ast[getEnd(node) - node];
+        // children come after their parent, so building from the end always
+        // finds the children already built
+        for (int i = objects.length - 1; i >= 0; i--) {
+            objects[i] = build(node + i, objects, node);
+        }
+        return objects;
+    }
+
+    /**
+     * Builds the object of the node from its already built children, which are
+     * in the objects at their handle minus base.
+     */
+    private Ast build(int node, Ast[] objects, int base) {
+        int child = firstChildren[node];
+        switch (kinds[node]) {
+            case SOURCE: {
+                List<Ast.Global> globals = new ArrayList<>(data[node]);
+                for (int i = 0; i < data[node]; i++, child = nextSiblings[child]) {
+                    globals.add((Ast.Global) objects[child - base]);
+                }
+                return new Ast.Source(globals, children(child, objects, base));
+            }
+            case GLOBAL: {
+                Ast.Global global = new Ast.Global((String) table.get(values[node]), (String) table.get(extras[node]),
+                        data[node] != 0, optional(child, objects, base));
+                global.setVariable((Environment.Variable) getReference(node));
+                return global;
+            }
+            case FUNCTION: {
+                Signature signature = (Signature) table.get(extras[node]);
+                Ast.Function function = new Ast.Function((String) table.get(values[node]), signature.parameters,
+                        signature.parameterTypeNames, Optional.ofNullable(signature.returnTypeName),
+                        children(child, objects, base));
+                function.setFunction((Environment.Function) getReference(node));
+                return function;
+            }
+            case EXPRESSION:
+                return new Ast.Statement.Expression((Ast.Expression) objects[child - base]);
+            case DECLARATION: {
+                Ast.Statement.Declaration declaration = new Ast.Statement.Declaration((String) table.get(values[node]),
+                        Optional.ofNullable((String) table.get(extras[node])), optional(child, objects, base));
+                declaration.setVariable((Environment.Variable) getReference(node));
+                return declaration;
+            }
+            case ASSIGNMENT:
+                return new Ast.Statement.Assignment((Ast.Expression) objects[child - base],
+                        (Ast.Expression) objects[nextSiblings[child] - base]);
+            case IF: {
+                Ast.Expression condition = (Ast.Expression) objects[child - base];
+                child = nextSiblings[child];
+                List<Ast.Statement> thenStatements = new ArrayList<>(data[node]);
+                for (int i = 0; i < data[node]; i++, child = nextSiblings[child]) {
+                    thenStatements.add((Ast.Statement) objects[child - base]);
+                }
+                return new Ast.Statement.If(condition, thenStatements, children(child, objects, base));
+            }
+            case SWITCH:
+                return new Ast.Statement.Switch((Ast.Expression) objects[child - base],
+                        children(nextSiblings[child], objects, base));
+            case CASE:
+                if (data[node] != 0) {
+                    return new Ast.Statement.Case(Optional.of((Ast.Expression) objects[child - base]),
+                            children(nextSiblings[child], objects, base));
+                }
+                return new Ast.Statement.Case(Optional.empty(), children(child, objects, base));
+            case WHILE:
+                return new Ast.Statement.While((Ast.Expression) objects[child - base],
+                        children(nextSiblings[child], objects, base));
+            case RETURN:
+                return new Ast.Statement.Return((Ast.Expression) objects[child - base]);
+            case LITERAL: {
+                Ast.Expression.Literal literal = new Ast.Expression.Literal(table.get(values[node]));
+                literal.setType(typeTable.get(types[node]));
+                return literal;
+            }
+            case GROUP: {
+                Ast.Expression.Group group = new Ast.Expression.Group((Ast.Expression) objects[child - base]);
+                group.setType(typeTable.get(types[node]));
+                return group;
+            }
+            case BINARY: {
+                Ast.Expression.Binary binary = new Ast.Expression.Binary((String) table.get(values[node]),
+                        (Ast.Expression) objects[child - base], (Ast.Expression) objects[nextSiblings[child] - base]);
+                binary.setType(typeTable.get(types[node]));
+                return binary;
+            }
+            case ACCESS: {
+                Ast.Expression.Access access = new Ast.Expression.Access(optional(child, objects, base),
+                        (String) table.get(values[node]));
+                access.setVariable((Environment.Variable) getReference(node));
+                return access;
+            }
+            case CALL: {
+                Ast.Expression.Function function = new Ast.Expression.Function((String) table.get(values[node]),
+                        children(child, objects, base));
+                function.setFunction((Environment.Function) getReference(node));
+                return function;
+            }
+            case LIST: {
+                Ast.Expression.PlcList list = new Ast.Expression.PlcList(children(child, objects, base));
+                list.setType(typeTable.get(types[node]));
+                return list;
+            }
+        }
+        throw new AssertionError("Unknown node kind: " + kinds[node] + ".");
+    }
+
+    /**
+     * Returns the built objects of the given child and all its next siblings.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> List<T> children(int child, Ast[] objects, int base) {
+        List<T> children = new ArrayList<>();
+        for (; child != NONE; child = nextSiblings[child]) {
+            children.add((T) objects[child - base]);
+        }
+        return children;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Ast> Optional<T> optional(int child, Ast[] objects, int base) {
+        return child == NONE ? Optional.empty() : Optional.of((T) objects[child - base]);
+    }
+
+    /**
+     * Stores the type, variable or function set on the object of the node.
+     */
+    private void store(int node, Ast ast) {
+        switch (kinds[node]) {
+            case GLOBAL:
+                reference(node, ((Ast.Global) ast).findVariable());
+                break;
+            case FUNCTION:
+                reference(node, ((Ast.Function) ast).findFunction());
+                break;
+            case DECLARATION:
+                reference(node, ((Ast.Statement.Declaration) ast).findVariable());
+                break;
+            case ACCESS:
+                reference(node, ((Ast.Expression.Access) ast).findVariable());
+                break;
+            case CALL:
+                reference(node, ((Ast.Expression.Function) ast).findFunction());
+                break;
+            case LITERAL:
+                types[node] = typeId(((Ast.Expression.Literal) ast).findType());
+                break;
+            case GROUP:
+                types[node] = typeId(((Ast.Expression.Group) ast).findType());
+                break;
+            case BINARY:
+                types[node] = typeId(((Ast.Expression.Binary) ast).findType());
+                break;
+            case LIST:
+                types[node] = typeId(((Ast.Expression.PlcList) ast).findType());
+                break;
+        }
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Node " + node + " is out of bounds for " + size + " nodes.");
+        }
+    }
+
+    /**
+     * The declaration of the source given to a visitor of the root whose
+     * objects currently exist, shared by its lists of globals and functions.
+     */
+    private final class Cursor {
+
+        private int node = NONE;
+        private Ast[] objects;
+
+        /**
+         * Returns the object of the declaration, building it and dropping the
+         * previous one unless it is the same declaration.
+         */
+        private Ast get(int node) {
+            if (node != this.node) {
+                drop();
+                objects = build(node);
+                this.node = node;
+            }
+            return objects[0];
+        }
+
+        /**
+         * Stores what was set on the current declaration in the arena and
+         * drops its objects.
+         */
+        private void drop() {
+            if (objects != null) {
+                for (int i = 0; i < objects.length; i++) {
+                    store(node + i, objects[i]);
+                }
+            }
+            node = NONE;
+            objects = null;
+        }
+
+    }
+
+    /**
+     * The globals or functions of the source given to a visitor of the root,
+     * built on demand.
+     */
+    private final class Declarations<T extends Ast> extends AbstractList<T> {
+
+        private final int[] handles;
+        private final Cursor cursor;
+
+        private Declarations(int[] handles, Cursor cursor) {
+            this.handles = handles;
+            this.cursor = cursor;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) cursor.get(handles[index]);
+        }
+
+        @Override
+        public int size() {
+            return handles.length;
+        }
+
+    }
+
+    /**
+     * The parameters and return type of a function, stored in the table.
+     */
+    private static final class Signature {
+
+        private final List<String> parameters;
+        private final List<String> parameterTypeNames;
+        private final String returnTypeName;
+
+        private Signature(List<String> parameters, List<String> parameterTypeNames, String returnTypeName) {
+            this.parameters = parameters;
+            this.parameterTypeNames = parameterTypeNames;
+            this.returnTypeName = returnTypeName;
+        }
+
+    }
+
+}
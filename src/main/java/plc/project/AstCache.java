@@ -0,0 +1,266 @@
+package plc.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the results of {@link Parser#parseSource()} and {@link
+ * Analyzer#visit(Ast.Source)} by a SHA-256 hash of the source text, for
+ * sources which are compiled repeatedly such as shared library snippets.
+ *
+ * Entries are stored in the format of {@link AstSerializer} and each lookup
+ * reads a new copy of the AST, so callers (and the Analyzer) may mutate the
+ * result freely. The entries in memory are bounded by their total size in
+ * bytes, evicting the least recently used entry first. If a directory is
+ * given, entries are also written there and an entry missing from memory is
+ * read from it before parsing, which lets the cache be shared between
+ * processes; the directory is not bounded and an unreadable file (such as
+ * one of an older version of the format) is replaced. The directory is only
+ * an optimization, so an I/O error reading or writing it (such as a
+ * directory which is not writable, or a path which is a file) never fails a
+ * lookup: a failed read is a miss and a failed write is skipped, both
+ * counted by {@link #getDiskErrors()}.
+ *
+ * All methods may be called from multiple threads. Two threads missing the
+ * same entry at once both parse it.
+ */
+public final class AstCache {
+
+    private static final String EXTENSION = ".ast";
+
+    private final long maximumSize;
+    private final Path directory;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskErrors = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most the given number of bytes of entries in
+     * memory, without a directory.
+     */
+    public AstCache(long maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of bytes of entries in
+     * memory, and all entries in the given directory (which is created if
+     * needed) if it is not null.
+     */
+    public AstCache(long maximumSize, Path directory) {
+        this.maximumSize = maximumSize;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the parsed source, as from {@link Parser#parseSource()}. A
+     * {@link ParseException} is not cached and is thrown again by the next
+     * call.
+     */
+    public Ast.Source parse(String input) {
+        return get(hash(input), () -> new Parser(new Lexer(input).lexBuffer()).parseSource());
+    }
+
+    /**
+     * Returns the parsed source after visiting it with an analyzer from the
+     * given supplier, which is only called on a miss. Entries are keyed by the
+     * source alone, so every call on a cache must use equivalent analyzers,
+     * and the scope of the analyzer is only populated on a miss. A miss also
+     * looks up the parsed source, which is counted separately.
+     */
+    public Ast.Source analyze(String input, Supplier<Analyzer> analyzer) {
+        return get(hash(input) + "-analyzed", () -> {
+            Ast.Source source = parse(input);
+            analyzer.get().visit(source);
+            return source;
+        });
+    }
+
+    /**
+     * Returns the number of lookups found in memory.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups found in the directory but not in memory.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups which had to parse or analyze the source.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries evicted from memory.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of entries which could not be read from or written
+     * to the directory because of an I/O error.
+     */
+    public long getDiskErrors() {
+        return diskErrors.get();
+    }
+
+    /**
+     * Returns the total size of the entries in memory, in bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    private Ast.Source get(String key, Supplier<Ast.Source> compute) {
+        byte[] bytes;
+        synchronized (this) {
+            bytes = entries.get(key);
+        }
+        if (bytes != null) {
+            hits.incrementAndGet();
+            return read(bytes);
+        }
+        if (directory != null) {
+            bytes = load(key);
+            Ast.Source source = null;
+            try {
+                source = bytes == null ? null : AstSerializer.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+            } catch (IOException | RuntimeException e) {
+                // a file which is corrupt, truncated or from another version
+                // is a miss, and is replaced below
+            }
+            if (source != null) {
+                diskHits.incrementAndGet();
+                put(key, bytes);
+                return source;
+            }
+        }
+        misses.incrementAndGet();
+        Ast.Source source = compute.get();
+        bytes = write(source);
+        put(key, bytes);
+        if (directory != null) {
+            store(key, bytes);
+        }
+        return source;
+    }
+
+    private synchronized void put(String key, byte[] bytes) {
+        byte[] previous = entries.put(key, bytes);
+        size += bytes.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            size -= iterator.next().length;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads an entry from the directory, returning null if it is missing or
+     * cannot be read.
+     */
+    private byte[] load(String key) {
+        try {
+            return Files.readAllBytes(directory.resolve(key + EXTENSION));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            diskErrors.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to the directory through a temporary file, so readers
+     * never see a partial entry. If the write fails the entry is skipped and
+     * the temporary file deleted.
+     */
+    private void store(String key, byte[] bytes) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            diskErrors.incrementAndGet();
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // the directory is already failing, and the file is not
+                    // read as an entry
+                }
+            }
+        }
+    }
+
+    private static Ast.Source read(byte[] bytes) {
+        try {
+            return AstSerializer.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] write(Ast.Source source) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            AstSerializer.write(source, Channels.newChannel(output));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static String hash(String input) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest(input.getBytes(StandardCharsets.UTF_8))) {
+            builder.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+}
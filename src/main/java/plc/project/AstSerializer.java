@@ -0,0 +1,783 @@
+package plc.project;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes and reads an {@link Ast.Source} in a compact binary format, so a
+ * program which has not changed can be loaded without lexing, parsing and
+ * analyzing it again.
+ *
+ * The format starts with a magic number and {@link #VERSION}, which must be
+ * incremented with any change to the format; reading any other version fails
+ * with an {@link IOException} so the caller can fall back to parsing. Nodes
+ * follow in post-order (children before their parent), so both writing and
+ * reading are iterative and handle the same nesting as the {@link Parser}.
+ * Integers are written as variable-length quantities, and each string,
+ * variable and function is written once and then referenced by its position
+ * in a table.
+ *
+ * Types set by the {@link Analyzer} are written by name and resolved with
+ * {@link Environment#getType(String)} when read. Variables and functions keep
+ * their names, types and mutability but not their runtime values: a read
+ * variable holds {@link Environment#NIL} and a read function returns it, as
+ * with the functions the Analyzer defines.
+ */
+public final class AstSerializer {
+
+    /**
+     * The version of the format, written after the magic number.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x504C4341;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int SOURCE = 1;
+    private static final int GLOBAL = 2;
+    private static final int FUNCTION = 3;
+    private static final int EXPRESSION = 4;
+    private static final int DECLARATION = 5;
+    private static final int ASSIGNMENT = 6;
+    private static final int IF = 7;
+    private static final int SWITCH = 8;
+    private static final int CASE = 9;
+    private static final int WHILE = 10;
+    private static final int RETURN = 11;
+    private static final int LITERAL = 12;
+    private static final int GROUP = 13;
+    private static final int BINARY = 14;
+    private static final int ACCESS = 15;
+    private static final int CALL = 16;
+    private static final int LIST = 17;
+
+    private static final int NIL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INTEGER = 3;
+    private static final int BIG_INTEGER = 4;
+    private static final int DECIMAL = 5;
+    private static final int CHARACTER = 6;
+    private static final int STRING = 7;
+
+    /**
+     * References to strings, variables and functions: null, a new value which
+     * follows, or a value already in the table at the reference minus this.
+     */
+    private static final int NULL_REFERENCE = 0;
+    private static final int NEW_REFERENCE = 1;
+    private static final int TABLE_REFERENCE = 2;
+
+    private AstSerializer() {}
+
+    /**
+     * Writes the source to the channel.
+     */
+    public static void write(Ast.Source source, WritableByteChannel channel) throws IOException {
+        new Writer(channel).write(source);
+    }
+
+    /**
+     * Reads a source written by {@link #write(Ast.Source, WritableByteChannel)}
+     * from the channel, throwing an {@link IOException} if the data is not a
+     * source in this version of the format.
+     */
+    public static Ast.Source read(ReadableByteChannel channel) throws IOException {
+        return new Reader(channel).read();
+    }
+
+    private static final class Writer {
+
+        /**
+         * Marks that the node below it on the stack has had its children
+         * written, so it can be written itself.
+         */
+        private static final Object CHILDREN_WRITTEN = new Object();
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Environment.Variable, Integer> variables = new IdentityHashMap<>();
+        private final Map<Environment.Function, Integer> functions = new IdentityHashMap<>();
+
+        private Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void write(Ast.Source source) throws IOException {
+            buffer.putInt(MAGIC);
+            writeInt(VERSION);
+            ArrayDeque<Object> stack = new ArrayDeque<>();
+            List<Ast> children = new ArrayList<>();
+            stack.push(source);
+            while (!stack.isEmpty()) {
+                Object top = stack.pop();
+                if (top == CHILDREN_WRITTEN) {
+                    writeNode((Ast) stack.pop());
+                    continue;
+                }
+                stack.push(top);
+                stack.push(CHILDREN_WRITTEN);
+                children.clear();
+                addChildren((Ast) top, children);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Adds the children of the node in the order they are written.
+         */
+        private static void addChildren(Ast ast, List<Ast> children) {
+            if (ast instanceof Ast.Source) {
+                children.addAll(((Ast.Source) ast).getGlobals());
+                children.addAll(((Ast.Source) ast).getFunctions());
+            } else if (ast instanceof Ast.Global) {
+                ((Ast.Global) ast).getValue().ifPresent(children::add);
+            } else if (ast instanceof Ast.Function) {
+                children.addAll(((Ast.Function) ast).getStatements());
+            } else if (ast instanceof Ast.Statement.Expression) {
+                children.add(((Ast.Statement.Expression) ast).getExpression());
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                ((Ast.Statement.Declaration) ast).getValue().ifPresent(children::add);
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                children.add(((Ast.Statement.Assignment) ast).getReceiver());
+                children.add(((Ast.Statement.Assignment) ast).getValue());
+            } else if (ast instanceof Ast.Statement.If) {
+                children.add(((Ast.Statement.If) ast).getCondition());
+                children.addAll(((Ast.Statement.If) ast).getThenStatements());
+                children.addAll(((Ast.Statement.If) ast).getElseStatements());
+            } else if (ast instanceof Ast.Statement.Switch) {
+                children.add(((Ast.Statement.Switch) ast).getCondition());
+                children.addAll(((Ast.Statement.Switch) ast).getCases());
+            } else if (ast instanceof Ast.Statement.Case) {
+                ((Ast.Statement.Case) ast).getValue().ifPresent(children::add);
+                children.addAll(((Ast.Statement.Case) ast).getStatements());
+            } else if (ast instanceof Ast.Statement.While) {
+                children.add(((Ast.Statement.While) ast).getCondition());
+                children.addAll(((Ast.Statement.While) ast).getStatements());
+            } else if (ast instanceof Ast.Statement.Return) {
+                children.add(((Ast.Statement.Return) ast).getValue());
+            } else if (ast instanceof Ast.Expression.Group) {
+                children.add(((Ast.Expression.Group) ast).getExpression());
+            } else if (ast instanceof Ast.Expression.Binary) {
+                children.add(((Ast.Expression.Binary) ast).getLeft());
+                children.add(((Ast.Expression.Binary) ast).getRight());
+            } else if (ast instanceof Ast.Expression.Access) {
+                ((Ast.Expression.Access) ast).getOffset().ifPresent(children::add);
+            } else if (ast instanceof Ast.Expression.Function) {
+                children.addAll(((Ast.Expression.Function) ast).getArguments());
+            } else if (ast instanceof Ast.Expression.PlcList) {
+                children.addAll(((Ast.Expression.PlcList) ast).getValues());
+            }
+        }
+
+        /**
+         * Writes the node itself, after its children: its tag, the number of
+         * children of each kind, and its other fields.
+         */
+        private void writeNode(Ast ast) throws IOException {
+            if (ast instanceof Ast.Source) {
+                Ast.Source source = (Ast.Source) ast;
+                writeInt(SOURCE);
+                writeInt(source.getGlobals().size());
+                writeInt(source.getFunctions().size());
+            } else if (ast instanceof Ast.Global) {
+                Ast.Global global = (Ast.Global) ast;
+                writeInt(GLOBAL);
+                writeString(global.getName());
+                writeString(global.getTypeName());
+                writeBoolean(global.getMutable());
+                writeBoolean(global.getValue().isPresent());
+                writeVariable(global.findVariable());
+            } else if (ast instanceof Ast.Function) {
+                Ast.Function function = (Ast.Function) ast;
+                writeInt(FUNCTION);
+                writeString(function.getName());
+                writeStrings(function.getParameters());
+                writeStrings(function.getParameterTypeNames());
+                writeString(function.getReturnTypeName().orElse(null));
+                writeInt(function.getStatements().size());
+                writeFunction(function.findFunction());
+            } else if (ast instanceof Ast.Statement.Expression) {
+                writeInt(EXPRESSION);
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+                writeInt(DECLARATION);
+                writeString(declaration.getName());
+                writeString(declaration.getTypeName().orElse(null));
+                writeBoolean(declaration.getValue().isPresent());
+                writeVariable(declaration.findVariable());
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                writeInt(ASSIGNMENT);
+            } else if (ast instanceof Ast.Statement.If) {
+                writeInt(IF);
+                writeInt(((Ast.Statement.If) ast).getThenStatements().size());
+                writeInt(((Ast.Statement.If) ast).getElseStatements().size());
+            } else if (ast instanceof Ast.Statement.Switch) {
+                writeInt(SWITCH);
+                writeInt(((Ast.Statement.Switch) ast).getCases().size());
+            } else if (ast instanceof Ast.Statement.Case) {
+                writeInt(CASE);
+                writeBoolean(((Ast.Statement.Case) ast).getValue().isPresent());
+                writeInt(((Ast.Statement.Case) ast).getStatements().size());
+            } else if (ast instanceof Ast.Statement.While) {
+                writeInt(WHILE);
+                writeInt(((Ast.Statement.While) ast).getStatements().size());
+            } else if (ast instanceof Ast.Statement.Return) {
+                writeInt(RETURN);
+            } else if (ast instanceof Ast.Expression.Literal) {
+                writeInt(LITERAL);
+                writeLiteral(((Ast.Expression.Literal) ast).getLiteral());
+                writeType(((Ast.Expression.Literal) ast).findType());
+            } else if (ast instanceof Ast.Expression.Group) {
+                writeInt(GROUP);
+                writeType(((Ast.Expression.Group) ast).findType());
+            } else if (ast instanceof Ast.Expression.Binary) {
+                writeInt(BINARY);
+                writeString(((Ast.Expression.Binary) ast).getOperator());
+                writeType(((Ast.Expression.Binary) ast).findType());
+            } else if (ast instanceof Ast.Expression.Access) {
+                Ast.Expression.Access access = (Ast.Expression.Access) ast;
+                writeInt(ACCESS);
+                writeBoolean(access.getOffset().isPresent());
+                writeString(access.getName());
+                writeVariable(access.findVariable());
+            } else if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) ast;
+                writeInt(CALL);
+                writeString(function.getName());
+                writeInt(function.getArguments().size());
+                writeFunction(function.findFunction());
+            } else if (ast instanceof Ast.Expression.PlcList) {
+                writeInt(LIST);
+                writeInt(((Ast.Expression.PlcList) ast).getValues().size());
+                writeType(((Ast.Expression.PlcList) ast).findType());
+            } else {
+                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+            }
+        }
+
+        private void writeLiteral(Object literal) throws IOException {
+            if (literal == null) {
+                writeInt(NIL);
+            } else if (literal instanceof Boolean) {
+                writeInt((Boolean) literal ? TRUE : FALSE);
+            } else if (literal instanceof BigInteger) {
+                writeInteger((BigInteger) literal);
+            } else if (literal instanceof BigDecimal) {
+                writeInt(DECIMAL);
+                writeInteger(((BigDecimal) literal).unscaledValue());
+                writeLong(((BigDecimal) literal).scale());
+            } else if (literal instanceof Character) {
+                writeInt(CHARACTER);
+                writeInt((Character) literal);
+            } else if (literal instanceof String) {
+                writeInt(STRING);
+                writeString((String) literal);
+            } else {
+                throw new IllegalArgumentException("Unsupported literal " + literal + ".");
+            }
+        }
+
+        private void writeInteger(BigInteger integer) throws IOException {
+            if (integer.bitLength() < Long.SIZE) {
+                writeInt(INTEGER);
+                writeLong(integer.longValue());
+            } else {
+                writeInt(BIG_INTEGER);
+                writeBytes(integer.toByteArray());
+            }
+        }
+
+        private void writeType(Environment.Type type) throws IOException {
+            writeString(type == null ? null : type.getName());
+        }
+
+        private void writeVariable(Environment.Variable variable) throws IOException {
+            if (writeReference(variable, variables)) {
+                writeString(variable.getName());
+                writeString(variable.getJvmName());
+                writeType(variable.getType());
+                writeBoolean(variable.getMutable());
+            }
+        }
+
+        private void writeFunction(Environment.Function function) throws IOException {
+            if (writeReference(function, functions)) {
+                writeString(function.getName());
+                writeString(function.getJvmName());
+                writeInt(function.getParameterTypes().size());
+                for (Environment.Type type : function.getParameterTypes()) {
+                    writeType(type);
+                }
+                writeType(function.getReturnType());
+            }
+        }
+
+        private void writeStrings(List<String> strings) throws IOException {
+            writeInt(strings.size());
+            for (String string : strings) {
+                writeString(string);
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            if (writeReference(string, strings)) {
+                writeBytes(string.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Writes a reference to the value, returning true if it is new and
+         * must be written next.
+         */
+        private <T> boolean writeReference(T value, Map<T, Integer> table) throws IOException {
+            if (value == null) {
+                writeInt(NULL_REFERENCE);
+                return false;
+            }
+            Integer index = table.get(value);
+            if (index != null) {
+                writeInt(index + TABLE_REFERENCE);
+                return false;
+            }
+            table.put(value, table.size());
+            writeInt(NEW_REFERENCE);
+            return true;
+        }
+
+        private void writeBoolean(boolean value) throws IOException {
+            writeInt(value ? 1 : 0);
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes a signed value, zigzag encoded so small negative values are
+         * short as well.
+         */
+        private void writeLong(long value) throws IOException {
+            ensure(10);
+            value = value << 1 ^ value >> 63;
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+    }
+
+    private static final class Reader {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final List<String> strings = new ArrayList<>();
+        private final List<Environment.Variable> variables = new ArrayList<>();
+        private final List<Environment.Function> functions = new ArrayList<>();
+        private final Map<String, Environment.Type> types = new HashMap<>();
+        private final List<Ast> stack = new ArrayList<>();
+
+        private Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        private Ast.Source read() throws IOException {
+            fill(Integer.BYTES);
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a serialized AST.");
+            }
+            int version = readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported AST format version " + version + ", expected " + VERSION + ".");
+            }
+            try {
+                while (true) {
+                    int tag = readInt();
+                    if (tag == SOURCE) {
+                        int globals = readInt();
+                        int functions = readInt();
+                        if (globals < 0 || functions < 0 || stack.size() != globals + functions) {
+                            throw new IOException("Invalid AST data.");
+                        }
+                        return new Ast.Source(children(0, globals, Ast.Global.class), children(globals, functions, Ast.Function.class));
+                    }
+                    Ast ast = readNode(tag);
+                    stack.add(ast);
+                }
+            } catch (ClassCastException | IndexOutOfBoundsException e) {
+                throw new IOException("Invalid AST data.", e);
+            }
+        }
+
+        /**
+         * Reads a node other than the source, taking its children from the
+         * top of the stack.
+         */
+        private Ast readNode(int tag) throws IOException {
+            switch (tag) {
+                case GLOBAL: {
+                    String name = readString();
+                    String typeName = readString();
+                    boolean mutable = readBoolean();
+                    Optional<Ast.Expression> value = readBoolean() ? Optional.of(pop(Ast.Expression.class)) : Optional.empty();
+                    Ast.Global global = new Ast.Global(name, typeName, mutable, value);
+                    global.setVariable(readVariable());
+                    return global;
+                }
+                case FUNCTION: {
+                    String name = readString();
+                    List<String> parameters = readStrings();
+                    List<String> parameterTypeNames = readStrings();
+                    Optional<String> returnTypeName = Optional.ofNullable(readString());
+                    List<Ast.Statement> statements = pop(readInt(), Ast.Statement.class);
+                    Ast.Function function = new Ast.Function(name, parameters, parameterTypeNames, returnTypeName, statements);
+                    function.setFunction(readFunction());
+                    return function;
+                }
+                case EXPRESSION:
+                    return new Ast.Statement.Expression(pop(Ast.Expression.class));
+                case DECLARATION: {
+                    String name = readString();
+                    Optional<String> typeName = Optional.ofNullable(readString());
+                    Optional<Ast.Expression> value = readBoolean() ? Optional.of(pop(Ast.Expression.class)) : Optional.empty();
+                    Ast.Statement.Declaration declaration = new Ast.Statement.Declaration(name, typeName, value);
+                    declaration.setVariable(readVariable());
+                    return declaration;
+                }
+                case ASSIGNMENT: {
+                    Ast.Expression value = pop(Ast.Expression.class);
+                    return new Ast.Statement.Assignment(pop(Ast.Expression.class), value);
+                }
+                case IF: {
+                    int thenCount = readInt();
+                    int elseCount = readInt();
+                    List<Ast.Statement> elseStatements = pop(elseCount, Ast.Statement.class);
+                    List<Ast.Statement> thenStatements = pop(thenCount, Ast.Statement.class);
+                    return new Ast.Statement.If(pop(Ast.Expression.class), thenStatements, elseStatements);
+                }
+                case SWITCH: {
+                    List<Ast.Statement.Case> cases = pop(readInt(), Ast.Statement.Case.class);
+                    return new Ast.Statement.Switch(pop(Ast.Expression.class), cases);
+                }
+                case CASE: {
+                    boolean hasValue = readBoolean();
+                    List<Ast.Statement> statements = pop(readInt(), Ast.Statement.class);
+                    return new Ast.Statement.Case(hasValue ? Optional.of(pop(Ast.Expression.class)) : Optional.empty(), statements);
+                }
+                case WHILE: {
+                    List<Ast.Statement> statements = pop(readInt(), Ast.Statement.class);
+                    return new Ast.Statement.While(pop(Ast.Expression.class), statements);
+                }
+                case RETURN:
+                    return new Ast.Statement.Return(pop(Ast.Expression.class));
+                case LITERAL: {
+                    Ast.Expression.Literal literal = new Ast.Expression.Literal(readLiteral());
+                    literal.setType(readType());
+                    return literal;
+                }
+                case GROUP: {
+                    Ast.Expression.Group group = new Ast.Expression.Group(pop(Ast.Expression.class));
+                    group.setType(readType());
+                    return group;
+                }
+                case BINARY: {
+                    String operator = readString();
+                    Ast.Expression right = pop(Ast.Expression.class);
+                    Ast.Expression.Binary binary = new Ast.Expression.Binary(operator, pop(Ast.Expression.class), right);
+                    binary.setType(readType());
+                    return binary;
+                }
+                case ACCESS: {
+                    Optional<Ast.Expression> offset = readBoolean() ? Optional.of(pop(Ast.Expression.class)) : Optional.empty();
+                    Ast.Expression.Access access = new Ast.Expression.Access(offset, readString());
+                    access.setVariable(readVariable());
+                    return access;
+                }
+                case CALL: {
+                    String name = readString();
+                    Ast.Expression.Function function = new Ast.Expression.Function(name, pop(readInt(), Ast.Expression.class));
+                    function.setFunction(readFunction());
+                    return function;
+                }
+                case LIST: {
+                    Ast.Expression.PlcList list = new Ast.Expression.PlcList(pop(readInt(), Ast.Expression.class));
+                    list.setType(readType());
+                    return list;
+                }
+                default:
+                    throw new IOException("Invalid AST node tag " + tag + ".");
+            }
+        }
+
+        /**
+         * Removes the node from the top of the stack, which must be of the
+         * given class.
+         */
+        private <T extends Ast> T pop(Class<T> type) throws IOException {
+            return check(stack.remove(stack.size() - 1), type);
+        }
+
+        /**
+         * Removes the given number of nodes from the top of the stack,
+         * returning them in the order they were read.
+         */
+        private <T extends Ast> List<T> pop(int count, Class<T> type) throws IOException {
+            if (count < 0 || count > stack.size()) {
+                throw new IOException("Invalid AST data.");
+            }
+            List<T> nodes = children(stack.size() - count, count, type);
+            stack.subList(stack.size() - count, stack.size()).clear();
+            return nodes;
+        }
+
+        private <T extends Ast> List<T> children(int start, int count, Class<T> type) throws IOException {
+            List<T> nodes = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                nodes.add(check(stack.get(i), type));
+            }
+            return nodes;
+        }
+
+        /**
+         * Returns the node as the given class, or throws if a corrupt entry
+         * put another kind of node where this one is expected.
+         */
+        private <T extends Ast> T check(Ast node, Class<T> type) throws IOException {
+            if (!type.isInstance(node)) {
+                throw new IOException("Invalid AST data.");
+            }
+            return type.cast(node);
+        }
+
+        private Object readLiteral() throws IOException {
+            int tag = readInt();
+            switch (tag) {
+                case NIL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INTEGER:
+                case BIG_INTEGER:
+                    return readInteger(tag);
+                case DECIMAL:
+                    return new BigDecimal(readInteger(readInt()), (int) readLong());
+                case CHARACTER:
+                    return (char) readInt();
+                case STRING:
+                    return readString();
+                default:
+                    throw new IOException("Invalid literal tag " + tag + ".");
+            }
+        }
+
+        private BigInteger readInteger(int tag) throws IOException {
+            if (tag == INTEGER) {
+                return BigInteger.valueOf(readLong());
+            } else if (tag == BIG_INTEGER) {
+                return new BigInteger(readBytes());
+            }
+            throw new IOException("Invalid integer tag " + tag + ".");
+        }
+
+        private Environment.Type readType() throws IOException {
+            String name = readString();
+            if (name == null) {
+                return null;
+            }
+            Environment.Type type = types.get(name);
+            if (type == null) {
+                try {
+                    type = Environment.getType(name);
+                } catch (RuntimeException e) {
+                    throw new IOException("Unknown type " + name + ".", e);
+                }
+                types.put(name, type);
+            }
+            return type;
+        }
+
+        private Environment.Variable readVariable() throws IOException {
+            int reference = readInt();
+            if (reference != NEW_REFERENCE) {
+                return reference == NULL_REFERENCE ? null : variables.get(reference - TABLE_REFERENCE);
+            }
+            String name = readString();
+            String jvmName = readString();
+            Environment.Type type = readType();
+            Environment.Variable variable = new Environment.Variable(name, jvmName, type, readBoolean(), Environment.NIL);
+            variables.add(variable);
+            return variable;
+        }
+
+        private Environment.Function readFunction() throws IOException {
+            int reference = readInt();
+            if (reference != NEW_REFERENCE) {
+                return reference == NULL_REFERENCE ? null : functions.get(reference - TABLE_REFERENCE);
+            }
+            String name = readString();
+            String jvmName = readString();
+            int arity = readCount();
+            List<Environment.Type> parameterTypes = new ArrayList<>();
+            for (int i = 0; i < arity; i++) {
+                parameterTypes.add(readType());
+            }
+            Environment.Type returnType = readType();
+            Environment.Function function = new Environment.Function(name, jvmName, parameterTypes, returnType, args -> Environment.NIL);
+            functions.add(function);
+            return function;
+        }
+
+        private List<String> readStrings() throws IOException {
+            int count = readCount();
+            List<String> strings = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                strings.add(readString());
+            }
+            return strings;
+        }
+
+        private String readString() throws IOException {
+            int reference = readInt();
+            if (reference != NEW_REFERENCE) {
+                return reference == NULL_REFERENCE ? null : strings.get(reference - TABLE_REFERENCE);
+            }
+            String string = new String(readBytes(), StandardCharsets.UTF_8);
+            strings.add(string);
+            return string;
+        }
+
+        private boolean readBoolean() throws IOException {
+            return readInt() != 0;
+        }
+
+        private int readInt() throws IOException {
+            return (int) readVarint(5);
+        }
+
+        private long readLong() throws IOException {
+            long value = readVarint(10);
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        /**
+         * Reads the number of values which follow, which must not be negative.
+         * Lists are not sized by it up front, so a corrupt count fails when
+         * the input runs out rather than by allocating too much.
+         */
+        private int readCount() throws IOException {
+            int count = readInt();
+            if (count < 0) {
+                throw new IOException("Invalid AST data.");
+            }
+            return count;
+        }
+
+        private long readVarint(int maximum) throws IOException {
+            fill(maximum);
+            long value = 0;
+            for (int shift = 0; shift < 7 * maximum; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    throw new EOFException("Truncated AST data.");
+                }
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid AST data.");
+        }
+
+        /**
+         * Reads a length and that many bytes, growing the array as they are
+         * read rather than trusting the length up front.
+         */
+        private byte[] readBytes() throws IOException {
+            int count = readCount();
+            byte[] bytes = new byte[Math.min(count, BUFFER_SIZE)];
+            int offset = 0;
+            while (offset < count) {
+                fill(1);
+                if (!buffer.hasRemaining()) {
+                    throw new EOFException("Truncated AST data.");
+                }
+                if (offset == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(count, 2L * offset));
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            return bytes;
+        }
+
+        /**
+         * Reads from the channel until the given number of bytes are buffered
+         * or the channel is exhausted.
+         */
+        private void fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+        }
+
+    }
+
+}
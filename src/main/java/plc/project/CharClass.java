@@ -0,0 +1,79 @@
+package plc.project;
+
+/**
+ * A precompiled set of characters, used by the lexer in place of single
+ * character regex patterns such as {@code "[A-Za-z0-9_-]"}.
+ *
+ * ASCII characters are stored as a 128 bit mask split across two longs, and
+ * every character outside of ASCII shares a single flag (which is enough for
+ * the lexer's grammar, where non-ASCII only shows up in negated classes like
+ * {@code "[^\"]"}). Matching is therefore a shift and a mask and never
+ * allocates, unlike {@link String#matches(String)}.
+ */
+public final class CharClass {
+
+    private final long low;
+    private final long high;
+    private final boolean other;
+
+    private CharClass(long low, long high, boolean other) {
+        this.low = low;
+        this.high = high;
+        this.other = other;
+    }
+
+    /**
+     * Returns a class matching exactly the given (ASCII) characters.
+     */
+    public static CharClass of(char... chars) {
+        long low = 0;
+        long high = 0;
+        for (char c : chars) {
+            if (c < 64) {
+                low |= 1L << c;
+            } else if (c < 128) {
+                high |= 1L << (c - 64);
+            } else {
+                throw new IllegalArgumentException("Non-ASCII character " + (int) c + " in character class.");
+            }
+        }
+        return new CharClass(low, high, false);
+    }
+
+    /**
+     * Returns a class matching the (ASCII) characters from first to last,
+     * inclusive, like the regex {@code [first-last]}.
+     */
+    public static CharClass range(char first, char last) {
+        char[] chars = new char[last - first + 1];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (first + i);
+        }
+        return of(chars);
+    }
+
+    /**
+     * Returns the union of this class and the given class.
+     */
+    public CharClass or(CharClass other) {
+        return new CharClass(low | other.low, high | other.high, this.other || other.other);
+    }
+
+    /**
+     * Returns the complement of this class, like the regex {@code [^...]}.
+     */
+    public CharClass negate() {
+        return new CharClass(~low, ~high, !other);
+    }
+
+    public boolean matches(char c) {
+        if (c < 64) {
+            return (low & (1L << c)) != 0;
+        } else if (c < 128) {
+            return (high & (1L << (c - 64))) != 0;
+        } else {
+            return other;
+        }
+    }
+
+}
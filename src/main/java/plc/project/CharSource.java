@@ -0,0 +1,407 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The input backing a {@link Lexer.CharStream}, addressed by absolute
+ * character index from the start of the input.
+ *
+ * The stream only ever looks a few characters ahead of its index and back to
+ * the start of the current token, and it calls {@link #release(int)} once
+ * characters before an index are no longer needed. This allows sources other
+ * than a {@link String} to hold only a sliding window of the input.
+ */
+abstract class CharSource {
+
+    abstract boolean has(int index);
+
+    abstract char charAt(int index);
+
+    abstract String substring(int start, int end);
+
+    /**
+     * Notifies the source that no character before the given index will be
+     * requested again.
+     */
+    void release(int index) {}
+
+    static CharSource of(String input) {
+        return new StringSource(input, input.length());
+    }
+
+    /**
+     * Returns a source over the input which ends at the given index, so the
+     * characters after it are never seen.
+     */
+    static CharSource of(String input, int end) {
+        return new StringSource(input, end);
+    }
+
+    /**
+     * Returns a source over a mutable sequence such as a {@link
+     * StringBuilder}, which must not change while it is being lexed.
+     */
+    static CharSource of(CharSequence input) {
+        return new SequenceSource(input);
+    }
+
+    static CharSource of(Reader reader) {
+        return new ReaderSource(reader);
+    }
+
+    /**
+     * Returns a source over UTF-8 (and so also ASCII) bytes, which are only
+     * decoded where they aren't ASCII.
+     */
+    static CharSource of(ByteBuffer bytes) {
+        return new Utf8Source(bytes);
+    }
+
+    /**
+     * Maps the given channel into memory and lexes its UTF-8 bytes directly
+     * (see {@link #of(ByteBuffer)}), without reading the file into a heap
+     * string.
+     */
+    static CharSource map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Input of " + channel.size() + " bytes is too large to lex.");
+        }
+        return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    private static final class StringSource extends CharSource {
+
+        private final String input;
+        private final int end;
+
+        private StringSource(String input, int end) {
+            this.input = input;
+            this.end = end;
+        }
+
+        @Override
+        boolean has(int index) {
+            return index < end;
+        }
+
+        @Override
+        char charAt(int index) {
+            return input.charAt(index);
+        }
+
+        @Override
+        String substring(int start, int end) {
+            return input.substring(start, end);
+        }
+
+    }
+
+    private static final class SequenceSource extends CharSource {
+
+        private final CharSequence input;
+
+        private SequenceSource(CharSequence input) {
+            this.input = input;
+        }
+
+        @Override
+        boolean has(int index) {
+            return index < input.length();
+        }
+
+        @Override
+        char charAt(int index) {
+            return input.charAt(index);
+        }
+
+        @Override
+        String substring(int start, int end) {
+            return input.subSequence(start, end).toString();
+        }
+
+    }
+
+    /**
+     * A source holding a window of characters from the current token onward,
+     * refilled on demand by {@link #read(char[], int, int)}.
+     */
+    private static abstract class WindowSource extends CharSource {
+
+        private static final int CAPACITY = 8192;
+
+        private char[] buffer = new char[CAPACITY];
+        private int start = 0;
+        private int end = 0;
+        private int released = 0;
+        private boolean exhausted = false;
+
+        /**
+         * Reads up to length characters into the buffer, returning the number
+         * of characters read or -1 at the end of the input.
+         */
+        abstract int read(char[] buffer, int offset, int length) throws IOException;
+
+        @Override
+        boolean has(int index) {
+            return index < end || fill(index);
+        }
+
+        @Override
+        char charAt(int index) {
+            if (index >= end && !fill(index)) {
+                throw new IndexOutOfBoundsException("Index " + index + " is past the end of the input.");
+            }
+            return buffer[index - start];
+        }
+
+        @Override
+        String substring(int start, int end) {
+            return new String(buffer, start - this.start, end - start);
+        }
+
+        @Override
+        void release(int index) {
+            released = index;
+        }
+
+        /**
+         * Reads until the window contains the given index, returning false if
+         * the input ends first. Released characters are discarded to make room,
+         * and the buffer only grows if a single token outgrows it. At least two
+         * characters are always free so a surrogate pair can be decoded.
+         */
+        private boolean fill(int index) {
+            while (index >= end && !exhausted) {
+                if (buffer.length - (end - start) < 2) {
+                    int kept = end - released;
+                    char[] target = kept * 2 > buffer.length ? new char[buffer.length * 2] : buffer;
+                    System.arraycopy(buffer, released - start, target, 0, kept);
+                    buffer = target;
+                    start = released;
+                }
+                try {
+                    int read = read(buffer, end - start, buffer.length - (end - start));
+                    if (read < 0) {
+                        exhausted = true;
+                    } else {
+                        end += read;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return index < end;
+        }
+
+    }
+
+    private static final class ReaderSource extends WindowSource {
+
+        private final Reader reader;
+
+        private ReaderSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, length);
+        }
+
+    }
+
+    /**
+     * A source over UTF-8 bytes, indexed by UTF-16 character like the other
+     * sources. ASCII bytes are characters as they are, and each maximal run of
+     * non-ASCII bytes is decoded on its own as it is scanned. Since an ASCII
+     * byte is never part of a multi-byte (or malformed) sequence, this gives
+     * the same characters as decoding the whole input, with malformed input
+     * replaced by {@code U+FFFD}.
+     *
+     * Only the runs from the start of the current token onward are kept, and
+     * the ASCII characters in between are mapped to bytes by their offset from
+     * the end of the preceding run. The segment (a run, or the ASCII between
+     * two runs) of the last character read is cached, so reading consecutive
+     * characters is a range check and an array access.
+     */
+    private static final class Utf8Source extends CharSource {
+
+        private static final int SCAN_AHEAD = 256;
+
+        private final ByteBuffer bytes;
+        private final byte[] array;
+        private final int offset;
+        private final int limit;
+        private final List<Run> runs = new ArrayList<>();
+        private int first = 0;
+        private int baseChar = 0;
+        private int baseByte = 0;
+        private int scannedChar = 0;
+        private int scannedByte = 0;
+
+        private int segmentStart = 0;
+        private int segmentLength = 0;
+        private int segmentByte = 0;
+        private String segmentChars = null;
+
+        private Utf8Source(ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.array = bytes.hasArray() ? bytes.array() : null;
+            this.offset = bytes.hasArray() ? bytes.arrayOffset() + bytes.position() : bytes.position();
+            this.limit = bytes.remaining();
+        }
+
+        @Override
+        boolean has(int index) {
+            return index < scannedChar || scan(index);
+        }
+
+        @Override
+        char charAt(int index) {
+            int position = index - segmentStart;
+            if (position < 0 || position >= segmentLength) {
+                if (index >= scannedChar && !scan(index)) {
+                    throw new IndexOutOfBoundsException("Index " + index + " is past the end of the input.");
+                }
+                locate(index);
+                position = index - segmentStart;
+            }
+            return segmentChars != null ? segmentChars.charAt(position) : (char) get(segmentByte + position);
+        }
+
+        @Override
+        String substring(int start, int end) {
+            locate(start);
+            if (segmentChars == null && end - segmentStart <= segmentLength) {
+                return ascii(segmentByte + start - segmentStart, end - start);
+            }
+            StringBuilder builder = new StringBuilder(end - start);
+            for (int index = start; index < end; index = segmentStart + segmentLength) {
+                locate(index);
+                int stop = Math.min(end, segmentStart + segmentLength);
+                if (segmentChars != null) {
+                    builder.append(segmentChars, index - segmentStart, stop - segmentStart);
+                } else {
+                    builder.append(ascii(segmentByte + index - segmentStart, stop - index));
+                }
+            }
+            return builder.toString();
+        }
+
+        @Override
+        void release(int index) {
+            while (first < runs.size() && runs.get(first).charEnd <= index) {
+                Run run = runs.get(first++);
+                baseChar = run.charEnd;
+                baseByte = run.byteEnd;
+            }
+            if (first > 64 && first * 2 > runs.size()) {
+                runs.subList(0, first).clear();
+                first = 0;
+            }
+        }
+
+        /**
+         * Scans the input until it contains the given index (and a little
+         * further, so most characters don't need a scan), returning false if
+         * the input ends first.
+         */
+        private boolean scan(int index) {
+            int target = index + SCAN_AHEAD;
+            while (scannedChar <= target && scannedByte < limit) {
+                if (get(scannedByte) >= 0) {
+                    scannedChar++;
+                    scannedByte++;
+                } else {
+                    int end = scannedByte + 1;
+                    while (end < limit && get(end) < 0) {
+                        end++;
+                    }
+                    Run run = new Run(scannedChar, end, decode(scannedByte, end));
+                    runs.add(run);
+                    scannedChar = run.charEnd;
+                    scannedByte = end;
+                }
+            }
+            return index < scannedChar;
+        }
+
+        /**
+         * Sets the segment to the one containing the (scanned) index, which
+         * is either the last run starting at or before it or the ASCII after
+         * that run up to the next one.
+         */
+        private void locate(int index) {
+            int low = first;
+            int high = runs.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (runs.get(middle).charStart <= index) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            Run run = low > first ? runs.get(low - 1) : null;
+            if (run != null && index < run.charEnd) {
+                segmentChars = run.chars;
+                segmentStart = run.charStart;
+                segmentLength = run.chars.length();
+            } else {
+                segmentChars = null;
+                segmentStart = run != null ? run.charEnd : baseChar;
+                segmentByte = run != null ? run.byteEnd : baseByte;
+                segmentLength = (low < runs.size() ? runs.get(low).charStart : scannedChar) - segmentStart;
+            }
+        }
+
+        private byte get(int position) {
+            return array != null ? array[offset + position] : bytes.get(offset + position);
+        }
+
+        private String ascii(int position, int length) {
+            return string(position, length, StandardCharsets.ISO_8859_1);
+        }
+
+        private String decode(int start, int end) {
+            return string(start, end - start, StandardCharsets.UTF_8);
+        }
+
+        private String string(int position, int length, Charset charset) {
+            if (array != null) {
+                return new String(array, offset + position, length, charset);
+            }
+            byte[] slice = new byte[length];
+            ByteBuffer view = bytes.duplicate();
+            view.position(offset + position);
+            view.get(slice);
+            return new String(slice, charset);
+        }
+
+    }
+
+    private static final class Run {
+
+        private final int charStart;
+        private final int charEnd;
+        private final int byteEnd;
+        private final String chars;
+
+        private Run(int charStart, int byteEnd, String chars) {
+            this.charStart = charStart;
+            this.charEnd = charStart + chars.length();
+            this.byteEnd = byteEnd;
+            this.chars = chars;
+        }
+
+    }
+
+}
@@ -0,0 +1,445 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table driven alternative to {@link Lexer}, producing exactly the same
+ * tokens (and the same {@link ParseException} for invalid input).
+ *
+ * Rather than trying several {@code peek} patterns per token, the lexer is a
+ * deterministic finite automaton built once from the declarative grammar in
+ * {@link #grammar()}. Each character of the input is read exactly once and
+ * mapped to a character class, which (with the current state) indexes an
+ * action in a flat table.
+ *
+ * Where {@link Lexer} backtracks, such as {@code "1."} lexing as the integer
+ * {@code 1} followed by the operator {@code .}, the state that gives up emits
+ * several tokens at once with fixed lengths instead of re-reading characters.
+ */
+public final class DfaLexer {
+
+    private enum State {
+        START, IDENTIFIER, MINUS, MINUS_ZERO, MINUS_ZERO_DOT, ZERO, ZERO_DOT, INTEGER, INTEGER_DOT, DECIMAL,
+        EQUALITY, OPERATOR, CHARACTER, CHARACTER_ESCAPE, CHARACTER_ESCAPED, CHARACTER_END, CHARACTER_DONE,
+        STRING, STRING_CHARACTER, STRING_ESCAPE, STRING_ESCAPED, STRING_DONE
+    }
+
+    private static final int GOTO = 0;
+    private static final int SKIP = 1;
+    private static final int EMIT = 2;
+    private static final int ERROR_AT = 3;
+    private static final int ERROR_AFTER = 4;
+    private static final int END = 5;
+
+    private static final int REST = -1;
+
+    private static final Table TABLE = grammar().build();
+
+    private final String input;
+    private final SymbolTable symbols = new SymbolTable();
+    private LexerListener listener = LexerListener.NONE;
+    private boolean decode = false;
+
+    public DfaLexer(String input) {
+        this.input = input;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public void setListener(LexerListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets whether literal tokens are emitted with their decoded value, as
+     * {@link Lexer#setDecodeLiterals(boolean)}.
+     */
+    public void setDecodeLiterals(boolean decode) {
+        this.decode = decode;
+    }
+
+    /**
+     * Lexes the whole input, as {@link Lexer#lex()}.
+     */
+    public List<Token> lex() {
+        List<Token> tokens = new ArrayList<>();
+        int[] actions = TABLE.actions;
+        int columns = TABLE.columns;
+        int state = State.START.ordinal();
+        int start = 0;
+        int index = 0;
+        int column = TABLE.column(input, index);
+        while (true) {
+            int action = actions[state * columns + column];
+            int argument = action & 0xFFFFFF;
+            switch (action >>> 24) {
+                case GOTO:
+                    state = argument;
+                    column = TABLE.column(input, ++index);
+                    break;
+                case SKIP:
+                    start = ++index;
+                    column = TABLE.column(input, index);
+                    break;
+                case EMIT:
+                    emit(argument, start, index, tokens);
+                    state = State.START.ordinal();
+                    start = index;
+                    break;
+                case ERROR_AT:
+                    throw new ParseException(TABLE.messages[argument], index);
+                case ERROR_AFTER:
+                    throw new ParseException(TABLE.messages[argument], index + 1);
+                default:
+                    return tokens;
+            }
+        }
+    }
+
+    private void emit(int recipe, int start, int end, List<Token> tokens) {
+        Token.Type[] types = TABLE.recipeTypes[recipe];
+        int[] lengths = TABLE.recipeLengths[recipe];
+        for (int i = 0; i < types.length; i++) {
+            int length = lengths[i] == REST ? end - start - TABLE.recipeFixed[recipe] : lengths[i];
+            String literal = input.substring(start, start + length);
+            Token token;
+            if (types[i] == Token.Type.IDENTIFIER) {
+                int symbol = symbols.intern(literal);
+                token = new Token(Token.Type.IDENTIFIER, symbols.getName(symbol), start, symbol);
+            } else if (decode) {
+                token = new Token(types[i], literal, start, SymbolTable.NONE, Literals.decode(types[i], literal));
+            } else {
+                token = new Token(types[i], literal, start);
+            }
+            tokens.add(token);
+            listener.onToken(token);
+            start += length;
+        }
+    }
+
+    /**
+     * The grammar of {@link Lexer}, as the action taken in each state on the
+     * next character. Rules are tried in order, and the end of the input
+     * defaults to the {@code otherwise} action where that does not consume a
+     * character.
+     */
+    private static Grammar grammar() {
+        Grammar grammar = new Grammar();
+        grammar.state(State.START)
+                .on(Lexer.SPACE.or(Lexer.WHITESPACE), skip())
+                .on(Lexer.IDENTIFIER_START, to(State.IDENTIFIER))
+                .on(Lexer.MINUS, to(State.MINUS))
+                .on(Lexer.ZERO, to(State.ZERO))
+                .on(Lexer.NON_ZERO_DIGIT, to(State.INTEGER))
+                .on(Lexer.SINGLE_QUOTE, to(State.CHARACTER))
+                .on(Lexer.DOUBLE_QUOTE, to(State.STRING))
+                .on(Lexer.BANG_OR_EQUALS, to(State.EQUALITY))
+                .otherwise(to(State.OPERATOR))
+                .atEnd(new Action(END));
+        grammar.state(State.IDENTIFIER)
+                .on(Lexer.IDENTIFIER_PART, to(State.IDENTIFIER))
+                .otherwise(emit(Token.Type.IDENTIFIER));
+
+        // A minus or zero not followed by a valid number is lexed on its own
+        // as an integer, and a trailing dot is always an operator.
+        grammar.state(State.MINUS)
+                .on(Lexer.ZERO, to(State.MINUS_ZERO))
+                .on(Lexer.NON_ZERO_DIGIT, to(State.INTEGER))
+                .otherwise(emit(Token.Type.OPERATOR));
+        grammar.state(State.MINUS_ZERO)
+                .on(Lexer.DOT, to(State.MINUS_ZERO_DOT))
+                .otherwise(emit(Token.Type.INTEGER, 1).then(Token.Type.INTEGER, 1));
+        grammar.state(State.MINUS_ZERO_DOT)
+                .on(Lexer.DIGIT, to(State.DECIMAL))
+                .otherwise(emit(Token.Type.INTEGER, 1).then(Token.Type.INTEGER, 1).then(Token.Type.OPERATOR, 1));
+        grammar.state(State.ZERO)
+                .on(Lexer.DOT, to(State.ZERO_DOT))
+                .otherwise(emit(Token.Type.INTEGER));
+        grammar.state(State.ZERO_DOT)
+                .on(Lexer.DIGIT, to(State.DECIMAL))
+                .otherwise(emit(Token.Type.INTEGER, 1).then(Token.Type.OPERATOR, 1));
+        grammar.state(State.INTEGER)
+                .on(Lexer.DIGIT, to(State.INTEGER))
+                .on(Lexer.DOT, to(State.INTEGER_DOT))
+                .otherwise(emit(Token.Type.INTEGER));
+        grammar.state(State.INTEGER_DOT)
+                .on(Lexer.DIGIT, to(State.DECIMAL))
+                .otherwise(emit(Token.Type.INTEGER).then(Token.Type.OPERATOR, 1));
+        grammar.state(State.DECIMAL)
+                .on(Lexer.DIGIT, to(State.DECIMAL))
+                .otherwise(emit(Token.Type.DECIMAL));
+
+        grammar.state(State.EQUALITY)
+                .on(Lexer.EQUALS, to(State.OPERATOR))
+                .otherwise(emit(Token.Type.OPERATOR));
+        grammar.state(State.OPERATOR)
+                .otherwise(emit(Token.Type.OPERATOR));
+
+        grammar.state(State.CHARACTER)
+                .on(Lexer.BACKSLASH, to(State.CHARACTER_ESCAPE))
+                .on(Lexer.NEWLINE, errorAfter("Character literals cannot span multiple lines"))
+                .on(Lexer.SINGLE_QUOTE, errorAt("The character cannot be a single quote"))
+                .otherwise(to(State.CHARACTER_END))
+                .atEnd(errorAt("The character cannot be a single quote"));
+        grammar.state(State.CHARACTER_ESCAPE)
+                .on(Lexer.ESCAPE, to(State.CHARACTER_ESCAPED))
+                .otherwise(errorAt("Invalid escape"));
+        grammar.state(State.CHARACTER_ESCAPED)
+                .on(Lexer.SINGLE_QUOTE, to(State.CHARACTER_DONE))
+                .on(Lexer.NEWLINE, errorAfter("Character literals cannot span multiple lines"))
+                .otherwise(to(State.CHARACTER_END))
+                .atEnd(errorAt("The character cannot be a single quote"));
+        grammar.state(State.CHARACTER_END)
+                .on(Lexer.SINGLE_QUOTE, to(State.CHARACTER_DONE))
+                .otherwise(errorAt("Not ending with a single quote"));
+        grammar.state(State.CHARACTER_DONE)
+                .otherwise(emit(Token.Type.CHARACTER));
+
+        // Each character of a string may be followed by an escape, which may
+        // itself be followed by a second escape character (even the quote).
+        grammar.state(State.STRING)
+                .on(Lexer.DOUBLE_QUOTE, to(State.STRING_DONE))
+                .otherwise(to(State.STRING_CHARACTER))
+                .atEnd(errorAt("It is an unterminated string"));
+        grammar.state(State.STRING_CHARACTER)
+                .on(Lexer.NEWLINE, errorAfter("String literals cannot span multiple lines"))
+                .on(Lexer.BACKSLASH, to(State.STRING_ESCAPE))
+                .on(Lexer.DOUBLE_QUOTE, to(State.STRING_DONE))
+                .otherwise(to(State.STRING_CHARACTER))
+                .atEnd(errorAt("It is an unterminated string"));
+        grammar.state(State.STRING_ESCAPE)
+                .on(Lexer.ESCAPE, to(State.STRING_ESCAPED))
+                .otherwise(errorAt("Invalid escape"));
+        grammar.state(State.STRING_ESCAPED)
+                .on(Lexer.ESCAPE, to(State.STRING))
+                .otherwise(to(State.STRING_CHARACTER))
+                .atEnd(errorAt("It is an unterminated string"));
+        grammar.state(State.STRING_DONE)
+                .otherwise(emit(Token.Type.STRING));
+        return grammar;
+    }
+
+    private static Action to(State state) {
+        Action action = new Action(GOTO);
+        action.target = state;
+        return action;
+    }
+
+    private static Action skip() {
+        return new Action(SKIP);
+    }
+
+    /**
+     * Emits a single token of the given type from the start of the token up
+     * to (not including) the current character.
+     */
+    private static Action emit(Token.Type type) {
+        return new Action(EMIT).then(type, REST);
+    }
+
+    private static Action emit(Token.Type type, int length) {
+        return new Action(EMIT).then(type, length);
+    }
+
+    private static Action errorAt(String message) {
+        Action action = new Action(ERROR_AT);
+        action.message = message;
+        return action;
+    }
+
+    private static Action errorAfter(String message) {
+        Action action = new Action(ERROR_AFTER);
+        action.message = message;
+        return action;
+    }
+
+    private static final class Action {
+
+        private final int kind;
+        private State target;
+        private String message;
+        private final List<Token.Type> types = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+
+        private Action(int kind) {
+            this.kind = kind;
+        }
+
+        /**
+         * Adds another token to an emit action, of the given length or the
+         * {@link #REST} of the characters not taken by other tokens.
+         */
+        private Action then(Token.Type type, int length) {
+            types.add(type);
+            lengths.add(length);
+            return this;
+        }
+
+        private boolean consumes() {
+            return kind == GOTO || kind == SKIP || kind == ERROR_AFTER;
+        }
+
+    }
+
+    private static final class Rules {
+
+        private final Map<CharClass, Action> rules = new LinkedHashMap<>();
+        private Action otherwise;
+        private Action atEnd;
+
+        private Rules on(CharClass chars, Action action) {
+            rules.put(chars, action);
+            return this;
+        }
+
+        private Rules otherwise(Action action) {
+            otherwise = action;
+            return this;
+        }
+
+        private Rules atEnd(Action action) {
+            atEnd = action;
+            return this;
+        }
+
+        private Action get(char c) {
+            for (Map.Entry<CharClass, Action> rule : rules.entrySet()) {
+                if (rule.getKey().matches(c)) {
+                    return rule.getValue();
+                }
+            }
+            return otherwise;
+        }
+
+    }
+
+    private static final class Grammar {
+
+        private final Map<State, Rules> states = new EnumMap<>(State.class);
+
+        private Rules state(State state) {
+            return states.computeIfAbsent(state, s -> new Rules());
+        }
+
+        /**
+         * Builds the transition table. Characters which every {@link
+         * CharClass} of the grammar treats the same share a column, with all
+         * non-ASCII characters represented by {@code '\u0080'} and a final
+         * column for the end of the input.
+         */
+        private Table build() {
+            List<CharClass> classes = new ArrayList<>();
+            for (Rules rules : states.values()) {
+                classes.addAll(rules.rules.keySet());
+            }
+            Map<String, Integer> signatures = new HashMap<>();
+            List<Character> representatives = new ArrayList<>();
+            byte[] columns = new byte[129];
+            for (char c = 0; c <= 128; c++) {
+                StringBuilder signature = new StringBuilder();
+                for (CharClass chars : classes) {
+                    signature.append(chars.matches(c) ? '1' : '0');
+                }
+                Integer column = signatures.get(signature.toString());
+                if (column == null) {
+                    column = representatives.size();
+                    signatures.put(signature.toString(), column);
+                    representatives.add(c);
+                }
+                columns[c] = (byte) (int) column;
+            }
+
+            int width = representatives.size() + 1;
+            int[] actions = new int[State.values().length * width];
+            List<Action> recipes = new ArrayList<>();
+            List<String> messages = new ArrayList<>();
+            for (State state : State.values()) {
+                Rules rules = states.get(state);
+                if (rules == null || rules.otherwise == null) {
+                    throw new IllegalStateException("No action for every character in state " + state + ".");
+                }
+                for (int column = 0; column < representatives.size(); column++) {
+                    actions[state.ordinal() * width + column] = encode(rules.get(representatives.get(column)), recipes, messages);
+                }
+                Action atEnd = rules.atEnd != null ? rules.atEnd : rules.otherwise;
+                if (atEnd.consumes()) {
+                    throw new IllegalStateException("No action at the end of the input in state " + state + ".");
+                }
+                actions[state.ordinal() * width + width - 1] = encode(atEnd, recipes, messages);
+            }
+            return new Table(columns, width, actions, recipes, messages);
+        }
+
+        private int encode(Action action, List<Action> recipes, List<String> messages) {
+            int argument = 0;
+            if (action.kind == GOTO) {
+                argument = action.target.ordinal();
+            } else if (action.kind == EMIT) {
+                if (!recipes.contains(action)) {
+                    recipes.add(action);
+                }
+                argument = recipes.indexOf(action);
+            } else if (action.kind == ERROR_AT || action.kind == ERROR_AFTER) {
+                if (!messages.contains(action.message)) {
+                    messages.add(action.message);
+                }
+                argument = messages.indexOf(action.message);
+            }
+            return action.kind << 24 | argument;
+        }
+
+    }
+
+    private static final class Table {
+
+        private final byte[] ascii;
+        private final int other;
+        private final int columns;
+        private final int[] actions;
+        private final Token.Type[][] recipeTypes;
+        private final int[][] recipeLengths;
+        private final int[] recipeFixed;
+        private final String[] messages;
+
+        private Table(byte[] columns, int width, int[] actions, List<Action> recipes, List<String> messages) {
+            this.ascii = columns;
+            this.other = columns[128];
+            this.columns = width;
+            this.actions = actions;
+            this.recipeTypes = new Token.Type[recipes.size()][];
+            this.recipeLengths = new int[recipes.size()][];
+            this.recipeFixed = new int[recipes.size()];
+            for (int i = 0; i < recipes.size(); i++) {
+                Action recipe = recipes.get(i);
+                recipeTypes[i] = recipe.types.toArray(new Token.Type[0]);
+                recipeLengths[i] = new int[recipe.lengths.size()];
+                for (int j = 0; j < recipeLengths[i].length; j++) {
+                    recipeLengths[i][j] = recipe.lengths.get(j);
+                    recipeFixed[i] += Math.max(recipeLengths[i][j], 0);
+                }
+            }
+            this.messages = messages.toArray(new String[0]);
+        }
+
+        /**
+         * Returns the column of the character at the given index, or of the
+         * end of the input.
+         */
+        private int column(String input, int index) {
+            if (index >= input.length()) {
+                return columns - 1;
+            }
+            char c = input.charAt(index);
+            return c < 128 ? ascii[c] : other;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the errors found in a recovering mode, such as {@link
+ * Lexer#lex(Diagnostics)}, which reports every error in the input instead of
+ * stopping at the first {@link ParseException}.
+ */
+public final class Diagnostics {
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    public void report(String message, int index) {
+        diagnostics.add(new Diagnostic(message, index));
+    }
+
+    public void report(ParseException exception) {
+        report(exception.getMessage(), exception.getIndex());
+    }
+
+    public boolean isEmpty() {
+        return diagnostics.isEmpty();
+    }
+
+    public int size() {
+        return diagnostics.size();
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    @Override
+    public String toString() {
+        return diagnostics.toString();
+    }
+
+    /**
+     * A single error, with the same message and index the {@link
+     * ParseException} for it would have had.
+     */
+    public static final class Diagnostic {
+
+        private final String message;
+        private final int index;
+
+        public Diagnostic(String message, int index) {
+            this.message = message;
+            this.index = index;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Diagnostic
+                    && message.equals(((Diagnostic) obj).message)
+                    && index == ((Diagnostic) obj).index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * message.hashCode() + index;
+        }
+
+        @Override
+        public String toString() {
+            return message + "@" + index;
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list backed by an array of exactly its size, used for the
+ * children of a compact AST (see {@link Parser#setCompact(boolean)}) instead
+ * of the {@link java.util.ArrayList} they are parsed into, which has a larger
+ * header and usually spare capacity.
+ */
+final class ImmutableList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[] elements;
+
+    private ImmutableList(Object[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Returns an immutable copy of the list, which for an empty list is the
+     * shared empty list and for a single element does not need an array.
+     */
+    static <T> List<T> copyOf(List<? extends T> list) {
+        switch (list.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(list.get(0));
+            default:
+                return new ImmutableList<>(list.toArray());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+}
@@ -0,0 +1,267 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Maintains the tokens of a source which is edited over time, such as a file
+ * open in an editor, re-lexing only the part of the source damaged by each
+ * {@link #edit(int, int, String)} instead of the whole input.
+ *
+ * Lexing a token never looks more than {@link #LOOKAHEAD} characters past its
+ * end, so tokens ending well before an edit are kept as is. Re-lexing starts
+ * after the last such token and stops once it reaches the start of an old
+ * token past the edit, since the lexer is then in the same state over the
+ * same text and all following tokens are unchanged (aside from their index).
+ *
+ * Tokens are stored as parallel arrays (like {@link TokenBuffer}) with a gap
+ * at the last edit. Tokens after the gap store their index relative to the end
+ * of the source, so they shift with an edit for free and an edit only costs
+ * time in the size of the damaged window and the distance from the last edit.
+ */
+public final class IncrementalLexer {
+
+    /**
+     * The number of characters past the end of a token the lexer may look at
+     * when lexing it, as in {@code peek(MINUS, ZERO, DOT, DIGIT)} after the
+     * fallback {@code "-"} token.
+     */
+    private static final int LOOKAHEAD = 3;
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final StringBuilder source;
+    private final SymbolTable symbols = new SymbolTable();
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] ids = new int[64];
+    private int gapStart = 0;
+    private int gapEnd = 64;
+
+    /**
+     * Lexes the initial source, throwing a {@link ParseException} if it is
+     * invalid.
+     */
+    public IncrementalLexer(String source) {
+        this.source = new StringBuilder(source);
+        Iterator<Token> tokens = new Lexer(new Lexer.CharStream(this.source, 0), symbols).tokens();
+        while (tokens.hasNext()) {
+            insert(tokens.next());
+        }
+    }
+
+    public String getSource() {
+        return source.toString();
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int size() {
+        return gapStart + types.length - gapEnd;
+    }
+
+    /**
+     * Returns the token at the given position, with its index in the current
+     * source.
+     */
+    public Token get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for " + size() + " tokens.");
+        }
+        int slot = i < gapStart ? i : i + gapEnd - gapStart;
+        int start = i < gapStart ? starts[slot] : starts[slot] + source.length();
+        String literal = ids[slot] != SymbolTable.NONE
+                ? symbols.getName(ids[slot])
+                : source.substring(start, start + lengths[slot]);
+        return new Token(TYPES[types[slot]], literal, start, ids[slot]);
+    }
+
+    /**
+     * Returns a view of the current tokens, which may be passed to {@link
+     * Parser#Parser(List)}. The view reflects later edits.
+     */
+    public List<Token> getTokens() {
+        return new AbstractList<Token>() {
+
+            @Override
+            public Token get(int index) {
+                return IncrementalLexer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return IncrementalLexer.this.size();
+            }
+
+        };
+    }
+
+    /**
+     * Replaces removed characters of the source starting at offset with the
+     * inserted text and re-lexes the damaged window, returning which tokens
+     * were replaced. If the edited source fails to lex, the {@link
+     * ParseException} is thrown and the edit is not applied.
+     */
+    public Edit edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException("Edit of " + removed + " characters at " + offset
+                    + " is out of bounds for " + source.length() + " characters.");
+        }
+        int first = firstDamaged(offset);
+        moveGap(first);
+        int windowStart = first == 0 ? 0 : starts[first - 1] + lengths[first - 1];
+
+        String removedText = source.substring(offset, offset + removed);
+        source.replace(offset, offset + removed, inserted);
+        int editEnd = offset + inserted.length();
+        int tail = types.length - gapEnd;
+        int kept = tail;
+        int count = 0;
+        try {
+            Iterator<Token> tokens = new Lexer(new Lexer.CharStream(source, windowStart), symbols).tokens();
+            boolean synced = false;
+            while (!synced && tokens.hasNext()) {
+                Token token = tokens.next();
+                while (kept > 0 && starts[types.length - kept] + source.length() < token.getIndex()) {
+                    kept--;
+                }
+                synced = token.getIndex() >= editEnd && kept > 0
+                        && starts[types.length - kept] + source.length() == token.getIndex();
+                if (!synced) {
+                    insert(token);
+                    count++;
+                }
+            }
+            if (!synced) {
+                kept = 0;
+            }
+        } catch (ParseException e) {
+            gapStart -= count;
+            source.replace(offset, editEnd, removedText);
+            throw e;
+        }
+        gapEnd = types.length - kept;
+        return new Edit(first, tail - kept, count);
+    }
+
+    /**
+     * Returns the position of the first token which may be changed by an edit
+     * at the given offset, which is the first token whose end plus lookahead
+     * reaches the offset.
+     */
+    private int firstDamaged(int offset) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int slot = middle < gapStart ? middle : middle + gapEnd - gapStart;
+            int start = middle < gapStart ? starts[slot] : starts[slot] + source.length();
+            if (start + lengths[slot] + LOOKAHEAD > offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Moves the gap to the given token position, converting the index of each
+     * token moved across it between absolute and relative to the end.
+     */
+    private void moveGap(int position) {
+        int length = source.length();
+        while (gapStart > position) {
+            gapStart--;
+            gapEnd--;
+            move(gapStart, gapEnd, -length);
+        }
+        while (gapStart < position) {
+            move(gapEnd, gapStart, length);
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void move(int from, int to, int shift) {
+        types[to] = types[from];
+        starts[to] = starts[from] + shift;
+        lengths[to] = lengths[from];
+        ids[to] = ids[from];
+    }
+
+    /**
+     * Inserts a token at the start of the gap, growing the arrays if the gap
+     * is empty.
+     */
+    private void insert(Token token) {
+        if (gapStart == gapEnd) {
+            int tail = types.length - gapEnd;
+            int capacity = types.length * 2;
+            types = grow(types, capacity, tail);
+            starts = grow(starts, capacity, tail);
+            lengths = grow(lengths, capacity, tail);
+            ids = grow(ids, capacity, tail);
+            gapEnd = capacity - tail;
+        }
+        types[gapStart] = (byte) token.getType().ordinal();
+        starts[gapStart] = token.getIndex();
+        lengths[gapStart] = token.getLiteral().length();
+        ids[gapStart] = token.getSymbol();
+        gapStart++;
+    }
+
+    private byte[] grow(byte[] array, int capacity, int tail) {
+        byte[] result = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, result, capacity - tail, tail);
+        return result;
+    }
+
+    private int[] grow(int[] array, int capacity, int tail) {
+        int[] result = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, result, capacity - tail, tail);
+        return result;
+    }
+
+    /**
+     * The tokens replaced by an edit: the removed tokens starting at {@link
+     * #getIndex()} were replaced by the inserted tokens at the same position,
+     * and the tokens after them only had their index shifted.
+     */
+    public static final class Edit {
+
+        private final int index;
+        private final int removed;
+        private final int inserted;
+
+        public Edit(int index, int removed, int inserted) {
+            this.index = index;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        @Override
+        public String toString() {
+            return "Edit{index=" + index + ", removed=" + removed + ", inserted=" + inserted + "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,294 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maintains the AST of a source which is edited over time, such as a file
+ * open in an editor, re-parsing only the globals and functions damaged by each
+ * edit instead of the whole source. Edits are described at the token level by
+ * an {@link IncrementalLexer.Edit}, so the two are used together:
+ *
+ * <pre>{@code
+ * IncrementalParser parser = new IncrementalParser(lexer.getTokens());
+ * Ast.Source source = parser.edit(lexer.getTokens(), lexer.edit(offset, removed, inserted));
+ * }</pre>
+ *
+ * Each declaration is parsed from its first token and never looks more than
+ * {@link #LOOKAHEAD} tokens past its end, so declarations ending well before
+ * an edit are kept as is. Re-parsing starts at the first declaration which may
+ * see the edit and stops once it reaches the start of an old declaration past
+ * the edit, since that declaration and all following ones are then parsed from
+ * the same tokens and are reused as the same objects.
+ *
+ * The token positions of the declarations are stored with a gap at the last
+ * edit, as in {@link IncrementalLexer}, with positions after the gap relative
+ * to the end of the tokens so they shift with an edit for free. Besides
+ * re-parsing, an edit only costs time in the distance from the last edit and
+ * copying the lists of declarations for the new {@link Ast.Source}.
+ */
+public final class IncrementalParser {
+
+    /**
+     * The number of tokens past the end of a declaration the parser may look
+     * at when parsing it, as in the second {@code match(SEMICOLON)} of a global
+     * after its semicolon.
+     */
+    private static final int LOOKAHEAD = 2;
+
+    private final List<Ast.Global> globals = new ArrayList<>();
+    private final List<Ast.Function> functions = new ArrayList<>();
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int gapStart = 0;
+    private int gapEnd = 16;
+    private int size;
+    private int stop;
+    private Ast.Source source;
+    private IncrementalLexer.Edit pending;
+
+    /**
+     * Parses the initial tokens, throwing a {@link ParseException} if they are
+     * invalid.
+     */
+    public IncrementalParser(List<Token> tokens) {
+        replace(0, new Declarations(tokens, 0, true, null), tokens.size());
+    }
+
+    /**
+     * Returns the AST of the last tokens which parsed successfully.
+     */
+    public Ast.Source getSource() {
+        return source;
+    }
+
+    /**
+     * Updates the AST for the given edit of the tokens, which must be the
+     * tokens after the edit, and returns it. The result is equal to parsing
+     * the tokens with {@link Parser#parseSource()}. If the edited tokens fail
+     * to parse, the {@link ParseException} is thrown and the AST is unchanged;
+     * the edit is then remembered and re-parsed along with the next one.
+     */
+    public Ast.Source edit(List<Token> tokens, IncrementalLexer.Edit edit) {
+        IncrementalLexer.Edit damage = pending == null ? edit : merge(pending, edit);
+        int count = count();
+        int first = firstDamaged(damage.getIndex());
+        if (first == count && damage.getIndex() > stop) {
+            moveGap(count);
+            size = tokens.size();
+            pending = null;
+            return source;
+        }
+        int position = first < count ? start(first) : stop;
+        Declarations declarations;
+        try {
+            declarations = new Declarations(tokens, position, first <= globals.size(), damage);
+        } catch (ParseException e) {
+            pending = damage;
+            throw e;
+        }
+        pending = null;
+        replace(first, declarations, tokens.size());
+        return source;
+    }
+
+    /**
+     * Replaces the old declarations from first until the next reused one with
+     * the parsed declarations, for the new number of tokens.
+     */
+    private void replace(int first, Declarations declarations, int size) {
+        int next = declarations.next;
+        int globalCount = globals.size();
+        if (next == count()) {
+            stop = declarations.stop;
+        } else {
+            stop += size - this.size;
+        }
+        replace(globals, Math.min(first, globalCount), Math.min(next, globalCount), declarations.globals);
+        replace(functions, Math.max(first - globalCount, 0), Math.max(next - globalCount, 0), declarations.functions);
+
+        moveGap(first);
+        gapEnd += next - first;
+        this.size = size;
+        for (int i = 0; i < declarations.count; i++) {
+            if (gapStart == gapEnd) {
+                grow();
+            }
+            starts[gapStart] = declarations.starts[i];
+            ends[gapStart] = declarations.ends[i];
+            gapStart++;
+        }
+        source = new Ast.Source(new ArrayList<>(globals), new ArrayList<>(functions));
+    }
+
+    /**
+     * Replaces the elements of the list from until to with the replacement,
+     * setting elements in place where the sizes overlap.
+     */
+    private static <T> void replace(List<T> list, int from, int to, List<T> replacement) {
+        int common = Math.min(to - from, replacement.size());
+        for (int i = 0; i < common; i++) {
+            list.set(from + i, replacement.get(i));
+        }
+        if (to - from > common) {
+            list.subList(from + common, to).clear();
+        } else if (replacement.size() > common) {
+            list.addAll(from + common, replacement.subList(common, replacement.size()));
+        }
+    }
+
+    private int count() {
+        return gapStart + starts.length - gapEnd;
+    }
+
+    private int start(int i) {
+        return i < gapStart ? starts[i] : starts[i + gapEnd - gapStart] + size;
+    }
+
+    private int end(int i) {
+        return i < gapStart ? ends[i] : ends[i + gapEnd - gapStart] + size;
+    }
+
+    /**
+     * Returns the first declaration which may be changed by an edit at the
+     * given token position, which is the first declaration whose end plus
+     * lookahead reaches the position.
+     */
+    private int firstDamaged(int index) {
+        int low = 0;
+        int high = count();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (end(middle) + LOOKAHEAD > index) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first declaration starting at or after the given position.
+     */
+    private int firstStarting(int position) {
+        int low = 0;
+        int high = count();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (start(middle) >= position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Moves the gap to the given declaration, converting the positions of each
+     * declaration moved across it between absolute and relative to the end.
+     */
+    private void moveGap(int position) {
+        while (gapStart > position) {
+            gapStart--;
+            gapEnd--;
+            starts[gapEnd] = starts[gapStart] - size;
+            ends[gapEnd] = ends[gapStart] - size;
+        }
+        while (gapStart < position) {
+            starts[gapStart] = starts[gapEnd] + size;
+            ends[gapStart] = ends[gapEnd] + size;
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    /**
+     * Doubles the capacity of the positions, keeping the declarations after
+     * the gap at the end.
+     */
+    private void grow() {
+        int tail = starts.length - gapEnd;
+        int capacity = starts.length * 2;
+        int[] newStarts = Arrays.copyOf(starts, capacity);
+        int[] newEnds = Arrays.copyOf(ends, capacity);
+        System.arraycopy(starts, gapEnd, newStarts, capacity - tail, tail);
+        System.arraycopy(ends, gapEnd, newEnds, capacity - tail, tail);
+        starts = newStarts;
+        ends = newEnds;
+        gapEnd = capacity - tail;
+    }
+
+    /**
+     * Combines two consecutive edits into one covering both, in the tokens
+     * before the first edit.
+     */
+    private static IncrementalLexer.Edit merge(IncrementalLexer.Edit first, IncrementalLexer.Edit second) {
+        int start = Math.min(first.getIndex(), second.getIndex());
+        int end = Math.max(first.getIndex() + first.getInserted(), second.getIndex() + second.getRemoved());
+        int removed = end - first.getInserted() + first.getRemoved() - start;
+        int inserted = end - second.getRemoved() + second.getInserted() - start;
+        return new IncrementalLexer.Edit(start, removed, inserted);
+    }
+
+    /**
+     * The declarations parsed from a position, as in {@link
+     * Parser#parseSource()}, until there are no more or, if there is damage
+     * from an edit, until reaching the start of an old declaration past it.
+     * In the latter case, {@link #next} is that declaration, which is reused
+     * along with all following ones.
+     */
+    private final class Declarations {
+
+        private final List<Ast.Global> globals = new ArrayList<>();
+        private final List<Ast.Function> functions = new ArrayList<>();
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+        private int next;
+        private int stop;
+
+        private Declarations(List<Token> tokens, int position, boolean global, IncrementalLexer.Edit damage) {
+            int oldCount = count();
+            int shift = damage == null ? 0 : damage.getInserted() - damage.getRemoved();
+            next = damage == null ? oldCount : firstStarting(damage.getIndex() + damage.getRemoved());
+            Parser parser = new Parser(tokens, position);
+            while (true) {
+                while (next < oldCount && start(next) + shift < position) {
+                    next++;
+                }
+                if (next < oldCount && start(next) + shift == position
+                        && (global || next >= IncrementalParser.this.globals.size())) {
+                    return;
+                }
+                int symbol = position < tokens.size() ? tokens.get(position).getSymbol() : SymbolTable.NONE;
+                if (global && (symbol == SymbolTable.VAL || symbol == SymbolTable.VAR || symbol == SymbolTable.LIST)) {
+                    globals.add(parser.parseGlobal());
+                } else if (symbol == SymbolTable.FUN) {
+                    global = false;
+                    functions.add(parser.parseFunction());
+                } else {
+                    next = oldCount;
+                    stop = position;
+                    return;
+                }
+                add(position, parser.getPosition());
+                position = parser.getPosition();
+            }
+        }
+
+        private void add(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+    }
+
+}
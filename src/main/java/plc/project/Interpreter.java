@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     private Scope scope = new Scope(null);
+    private SpanTable spans;
 
     public Interpreter(Scope parent) {
         scope = new Scope(parent);
@@ -25,12 +26,36 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return scope;
     }
 
+    /**
+     * Sets the spans of the nodes being interpreted, so that an error is
+     * thrown as a {@link SourceException} locating the innermost node it
+     * occurred in (see {@link SpanTable#locate(RuntimeException, Ast)}).
+     */
+    public void setSpans(SpanTable spans) {
+        this.spans = spans;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast ast) {
+        if (spans == null) {
+            return ast.accept(this);
+        }
+        try {
+            return ast.accept(this);
+        } catch (Return e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw spans.locate(e, ast);
+        }
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
-        for (Ast.Global global : ast.getGlobals()) {
+        // declarations go through visit(Ast) so their errors are located
+        for (Ast global : ast.getGlobals()) {
             visit(global);
         }
-        for (Ast.Function function : ast.getFunctions()) {
+        for (Ast function : ast.getFunctions()) {
             visit(function);
         }
         Environment.Function result = scope.lookupFunction("main", 0);
@@ -56,7 +81,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     public Environment.PlcObject visit(Ast.Function ast) {
         Scope temp = scope;
         scope.defineFunction(ast.getName(), ast.getParameters().size(), args -> {
-            Scope before = temp;
+            Scope before = scope;
             scope = new Scope(temp);
             int index = 0;
             for (String s : ast.getParameters()) {
@@ -465,13 +490,15 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     /**
-     * Exception class for returning values.
+     * Exception class for returning values. It is always caught by the call
+     * that invoked the function, so it skips filling in a stack trace.
      */
     private static class Return extends RuntimeException {
 
         private final Environment.PlcObject value;
 
         private Return(Environment.PlcObject value) {
+            super(null, null, false, false);
             this.value = value;
         }
 
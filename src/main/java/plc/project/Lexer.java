@@ -1,7 +1,17 @@
 package plc.project;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The lexer works through three main functions:
@@ -17,10 +27,78 @@ import java.util.List;
  * The {@link #peek(String...)} and {@link #match(String...)} functions are * helpers you need to use, they will make the implementation a lot easier. */
 public final class Lexer {
 
+    // Precompiled equivalents of the regex patterns the lex methods match on,
+    // also used by the grammar of DfaLexer.
+    static final CharClass LETTER = CharClass.range('A', 'Z').or(CharClass.range('a', 'z'));
+    static final CharClass DIGIT = CharClass.range('0', '9');
+    static final CharClass NON_ZERO_DIGIT = CharClass.range('1', '9');
+    static final CharClass ZERO = CharClass.of('0');
+    static final CharClass MINUS = CharClass.of('-');
+    static final CharClass DOT = CharClass.of('.');
+    static final CharClass IDENTIFIER_START = CharClass.of('@').or(LETTER);
+    static final CharClass IDENTIFIER_PART = LETTER.or(DIGIT).or(CharClass.of('_', '-'));
+    static final CharClass SINGLE_QUOTE = CharClass.of('\'');
+    static final CharClass DOUBLE_QUOTE = CharClass.of('"');
+    static final CharClass NOT_SINGLE_QUOTE = SINGLE_QUOTE.negate();
+    static final CharClass NOT_DOUBLE_QUOTE = DOUBLE_QUOTE.negate();
+    static final CharClass BACKSLASH = CharClass.of('\\');
+    static final CharClass ESCAPE = CharClass.of('b', 'n', 'r', 't', '\'', '"', '\\');
+    static final CharClass NEWLINE = CharClass.of('\n', '\r');
+    static final CharClass SPACE = CharClass.of(' ');
+    static final CharClass WHITESPACE = CharClass.of('\b', '\n', '\r', '\t');
+    static final CharClass BANG_OR_EQUALS = CharClass.of('!', '=');
+    static final CharClass EQUALS = CharClass.of('=');
+    static final CharClass LOGICAL = CharClass.of('(', '&', ')', '|');
+
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final String input;
     private final CharStream chars;
+    private final SymbolTable symbols;
+    private LexerListener listener = LexerListener.NONE;
 
     public Lexer(String input) {
+        this.input = input;
         chars = new CharStream(input);
+        symbols = new SymbolTable();
+    }
+
+    public Lexer(CharStream chars) {
+        this(chars, new SymbolTable());
+    }
+
+    /**
+     * Creates a lexer interning identifiers into the given symbol table, which
+     * may be shared between lexers so ids are stable across several inputs.
+     */
+    public Lexer(CharStream chars, SymbolTable symbols) {
+        this.input = null;
+        this.chars = chars;
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Sets whether literal tokens are emitted with their decoded value (see
+     * {@link Token#getValue()}), so the {@link Parser} doesn't have to decode
+     * them again. This is off by default. It applies to {@link #lex()} and
+     * {@link #lexParallel}, but not to {@link #lexBuffer()}: a {@link
+     * TokenBuffer} keeps no value per token, so the Parser decodes literals
+     * from the source there.
+     */
+    public void setDecodeLiterals(boolean decode) {
+        chars.decode = decode;
+    }
+
+    /**
+     * Sets the listener notified of each token lexed, which is {@link
+     * LexerListener#NONE} by default.
+     */
+    public void setListener(LexerListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -30,20 +108,236 @@ public final class Lexer {
     public List<Token> lex() {
 
         List<Token> tokens = new ArrayList<Token>();
+        while (skipWhitespace()) {
+            Token token = lexToken();
+            tokens.add(token);
+        }
+        return tokens;
+        //throw new UnsupportedOperationException(); //TODO
+    }
+
+    /**
+     * Lexes the input in the same way as {@link #lex()}, but rather than
+     * throwing at the first invalid token, reports it to the diagnostics and
+     * emits an {@link Token.Type#ERROR} token up to the next whitespace, from
+     * which lexing continues. Valid input is lexed exactly as by {@link #lex()}.
+     */
+    public List<Token> lex(Diagnostics diagnostics) {
+        List<Token> tokens = new ArrayList<>();
+        while (skipWhitespace()) {
+            Token token;
+            try {
+                token = lexToken();
+            } catch (ParseException e) {
+                diagnostics.report(e);
+                // The error token ends at the first whitespace after its
+                // start, which may be before the error (such as a string
+                // failing after a newline).
+                int end = 1;
+                while (end < chars.length && !isWhitespace(chars.get(end - chars.length))) {
+                    end++;
+                }
+                while (chars.length > end) {
+                    chars.retreat();
+                }
+                while (chars.has(0) && !isWhitespace(chars.get(0))) {
+                    chars.advance();
+                }
+                token = chars.emit(Token.Type.ERROR);
+                listener.onToken(token);
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns an iterator which lexes the input one token at a time as tokens
+     * are requested, skipping whitespace the same way as {@link #lex()}. Unlike
+     * {@link #lex()}, the full token list is never built, so this can be passed
+     * to {@link Parser#Parser(Iterator)} to parse in roughly constant memory.
+     *
+     * Any {@link ParseException} is thrown from {@link Iterator#hasNext()} or
+     * {@link Iterator#next()} once the iterator reaches the invalid input.
+     */
+    public Iterator<Token> tokens() {
+        return new Iterator<Token>() {
+
+            @Override
+            public boolean hasNext() {
+                return skipWhitespace();
+            }
+
+            @Override
+            public Token next() {
+                if (!skipWhitespace()) {
+                    throw new NoSuchElementException();
+                }
+                return lexToken();
+            }
+
+        };
+    }
+
+    /**
+     * Lexes the input in the same way as {@link #lex()}, but into a compact
+     * {@link TokenBuffer} over the input rather than a list of tokens. This
+     * requires the lexer to have been created from a {@link String}.
+     */
+    public TokenBuffer lexBuffer() {
+        if (input == null) {
+            throw new IllegalStateException("A token buffer requires a lexer created from a String.");
+        }
+        TokenBuffer buffer = new TokenBuffer(input, symbols);
+        while (skipWhitespace()) {
+            Token token = lexToken();
+            buffer.add(token.getType(), token.getIndex(), token.getLiteral().length(), token.getSymbol());
+        }
+        return buffer;
+    }
+
+    /**
+     * Lexes the input in the same way as {@link #lex()}, but in parallel on the
+     * given pool. This requires the lexer to have been created from a {@link
+     * String}.
+     *
+     * Since a valid token never contains a newline, the input is split into
+     * chunks after a newline, each of which is lexed separately over the same
+     * string (so token indices need no adjustment). The tokens are then
+     * concatenated, with identifiers re-interned into this lexer's symbol table
+     * in chunk order so symbol ids are the same as in sequential mode. If a
+     * chunk fails to lex, which may also be a string running into the next
+     * chunk, the input is lexed sequentially from the start of that chunk so
+     * that the result (or exception) is always identical to {@link #lex()}.
+     * The listener is notified of the tokens in order once all chunks are done.
+     */
+    public List<Token> lexParallel(ForkJoinPool pool) {
+        if (input == null) {
+            throw new IllegalStateException("Parallel lexing requires a lexer created from a String.");
+        }
+        return lexParallel(pool, Math.max(MIN_CHUNK_SIZE, input.length() / (4 * pool.getParallelism())));
+    }
+
+    /**
+     * Lexes the input in parallel on the common pool, see {@link
+     * #lexParallel(ForkJoinPool)}.
+     */
+    public List<Token> lexParallel() {
+        return lexParallel(ForkJoinPool.commonPool());
+    }
+
+    List<Token> lexParallel(ForkJoinPool pool, int chunkSize) {
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        int boundary = chunkSize;
+        while (boundary < input.length()) {
+            int newline = input.indexOf('\n', boundary);
+            if (newline < 0) {
+                break;
+            }
+            boundaries.add(newline + 1);
+            boundary = newline + 1 + chunkSize;
+        }
+        boundaries.add(input.length());
+
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            int start = boundaries.get(i);
+            int end = boundaries.get(i + 1);
+            SymbolTable table = i == 0 ? symbols : new SymbolTable();
+            tasks.add(() -> new Chunk(start, end, table));
+        }
+        List<Token> tokens = new ArrayList<>();
+        for (Future<Chunk> future : pool.invokeAll(tasks)) {
+            Chunk chunk;
+            try {
+                chunk = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            if (chunk.tokens == null) {
+                Lexer lexer = new Lexer(new CharStream(input, chunk.start, input.length()), symbols);
+                lexer.setDecodeLiterals(chars.decode);
+                tokens.addAll(lexer.lex());
+                break;
+            }
+            chunk.intern(symbols, tokens);
+        }
+        tokens.forEach(listener::onToken);
+        return tokens;
+    }
+
+    /**
+     * The tokens of one chunk of the input for {@link #lexParallel}, or null
+     * if the chunk could not be lexed on its own.
+     */
+    private final class Chunk {
+
+        private final int start;
+        private final SymbolTable table;
+        private final List<Token> tokens;
+
+        private Chunk(int start, int end, SymbolTable table) {
+            this.start = start;
+            this.table = table;
+            List<Token> tokens;
+            try {
+                Lexer lexer = new Lexer(new CharStream(input, start, end), table);
+                lexer.setDecodeLiterals(chars.decode);
+                tokens = lexer.lex();
+            } catch (ParseException e) {
+                tokens = null;
+            }
+            this.tokens = tokens;
+        }
+
+        /**
+         * Adds the tokens to the result, replacing identifiers with the ids
+         * and canonical literals of the given symbol table.
+         */
+        private void intern(SymbolTable symbols, List<Token> result) {
+            if (table == symbols) {
+                result.addAll(tokens);
+                return;
+            }
+            int[] ids = new int[table.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = symbols.intern(table.getName(i));
+            }
+            for (Token token : tokens) {
+                int symbol = token.getSymbol();
+                if (symbol != SymbolTable.NONE && (ids[symbol] != symbol || symbols.getName(symbol) != token.getLiteral())) {
+                    token = new Token(Token.Type.IDENTIFIER, symbols.getName(ids[symbol]), token.getIndex(), ids[symbol]);
+                }
+                result.add(token);
+            }
+        }
+
+    }
+
+    private static boolean isWhitespace(char c) {
+        return SPACE.matches(c) || WHITESPACE.matches(c);
+    }
+
+    /**
+     * Skips over any whitespace, returning true if there is a token to lex.
+     */
+    private boolean skipWhitespace() {
         while (chars.has(0)) {
-            if (match(" ")) {
+            if (match(SPACE)) {
                 chars.skip();
             }
-            else if (match("[\b\n\r\t]")) {
+            else if (match(WHITESPACE)) {
                 chars.skip();
             }
             else {
-                Token token = lexToken();
-                tokens.add(token);
+                return true;
             }
         }
-        return tokens;
-        //throw new UnsupportedOperationException(); //TODO
+        return false;
     }
 
     /**
@@ -60,26 +354,26 @@ public final class Lexer {
 
         Token result = null;
 
-        if (peek("@|[A-Za-z]")) {
+        if (peek(IDENTIFIER_START)) {
             result = lexIdentifier();
         }
 
-        else if (peek("-","[0-9]") || peek("[0-9]")) {
+        else if (peek(MINUS, DIGIT) || peek(DIGIT)) {
             result = lexNumber();
         }
 
-        else if (peek("'")){
+        else if (peek(SINGLE_QUOTE)){
             result = lexCharacter();
         }
 
-        else if (peek("\"")){
+        else if (peek(DOUBLE_QUOTE)){
             result = lexString();
         }
 
         else {
             result = lexOperator();
         }
-        System.out.println(result);
+        listener.onToken(result);
         return result;
 
         //throw new UnsupportedOperationException(); //TODO
@@ -90,11 +384,11 @@ public final class Lexer {
     // into whitespace). Last call emit and return newly created token.
     public Token lexIdentifier() {
 
-        match("@|[A-Za-z]");
-        while (peek("[A-Za-z0-9_-]")) {
-            match("[A-Za-z0-9_-]");
+        match(IDENTIFIER_START);
+        while (peek(IDENTIFIER_PART)) {
+            match(IDENTIFIER_PART);
         }
-        Token identifier = chars.emit(Token.Type.IDENTIFIER);
+        Token identifier = chars.emit(symbols);
         return identifier;
 
         //throw new UnsupportedOperationException(); //TODO
@@ -103,24 +397,24 @@ public final class Lexer {
     public Token lexNumber() {
 
         // negatives
-        if (peek("-","0","\\.","[0-9]")) {
-            match("-","0","\\.","[0-9]");
-            while (peek("[0-9]")) {
-                match("[0-9]");
+        if (peek(MINUS, ZERO, DOT, DIGIT)) {
+            match(MINUS, ZERO, DOT, DIGIT);
+            while (peek(DIGIT)) {
+                match(DIGIT);
             }
             Token dec = chars.emit(Token.Type.DECIMAL);
             return dec;
         }
 
-        else if (peek("-","[1-9]")) {
-            match("-","[1-9]");
-            while (peek("[0-9]")) {
-                match("[0-9]");
+        else if (peek(MINUS, NON_ZERO_DIGIT)) {
+            match(MINUS, NON_ZERO_DIGIT);
+            while (peek(DIGIT)) {
+                match(DIGIT);
             }
-            if (peek("\\.", "[0-9]")) {
-                match("\\.","[0-9]");
-                while (peek("[0-9]")) {
-                    match("[0-9]");
+            if (peek(DOT, DIGIT)) {
+                match(DOT, DIGIT);
+                while (peek(DIGIT)) {
+                    match(DIGIT);
                 }
                 Token dec = chars.emit(Token.Type.DECIMAL);
                 return dec;
@@ -133,24 +427,24 @@ public final class Lexer {
         // non-negatives
 
         // decimal case
-        else if (peek("0","\\.","[0-9]")) {
-            match("0","\\.","[0-9]");
-            while (peek("[0-9]")) {
-                match("[0-9]");
+        else if (peek(ZERO, DOT, DIGIT)) {
+            match(ZERO, DOT, DIGIT);
+            while (peek(DIGIT)) {
+                match(DIGIT);
             }
             Token dec = chars.emit(Token.Type.DECIMAL);
             return dec;
         }
         // non-zero integer case
-        else if (peek("[1-9]")) {
-            match("[1-9]");
-            while (peek("[0-9]")) {
-                match("[0-9]");
+        else if (peek(NON_ZERO_DIGIT)) {
+            match(NON_ZERO_DIGIT);
+            while (peek(DIGIT)) {
+                match(DIGIT);
             }
-            if (peek("\\.", "[0-9]")) {
-                match("\\.","[0-9]");
-                while (peek("[0-9]")) {
-                    match("[0-9]");
+            if (peek(DOT, DIGIT)) {
+                match(DOT, DIGIT);
+                while (peek(DIGIT)) {
+                    match(DIGIT);
                 }
                 Token dec = chars.emit(Token.Type.DECIMAL);
                 return dec;
@@ -166,11 +460,11 @@ public final class Lexer {
     }
 
     public Token lexCharacter() {
-        match("\'");
+        match(SINGLE_QUOTE);
 
-        if (match("\\\\")){
-            if (match("[bnrt\'\"\\\\]")){
-                if (match("\'")) {
+        if (match(BACKSLASH)){
+            if (match(ESCAPE)){
+                if (match(SINGLE_QUOTE)) {
                     return chars.emit(Token.Type.CHARACTER);
                 }
             }
@@ -180,18 +474,18 @@ public final class Lexer {
         }
 
         // Character literals cannot span multiple lines
-        if (match("[\n\r]")){
+        if (match(NEWLINE)){
             throw new ParseException("Character literals cannot span multiple lines", chars.index);
         }
 
         //The character cannot be a single quote ('), without being preceded by a backslash
-        if (!match("[^']"))
+        if (!match(NOT_SINGLE_QUOTE))
         {
             throw new ParseException("The character cannot be a single quote", chars.index);
         }
 
         // check if ends with a single quote
-        if (match("\'")) {
+        if (match(SINGLE_QUOTE)) {
             return chars.emit(Token.Type.CHARACTER);
         }
         else {
@@ -200,23 +494,23 @@ public final class Lexer {
     }
 
     public Token lexString() {
-        match("\"");
+        match(DOUBLE_QUOTE);
 
-        while (match("[^\"]")){
-            if (match("[\n\r]")){
+        while (match(NOT_DOUBLE_QUOTE)){
+            if (match(NEWLINE)){
                 throw new ParseException("String literals cannot span multiple lines", chars.index);
             }
-            if (match("\\\\")){
-                if (!match("[bnrt\'\"\\\\]")){
+            if (match(BACKSLASH)){
+                if (!match(ESCAPE)){
                     throw new ParseException("Invalid escape", chars.index);
                 }
                 else {
-                    match("[bnrt\'\"\\\\]");
+                    match(ESCAPE);
                 }
             }
         }
 
-        if (match("\"")){
+        if (match(DOUBLE_QUOTE)){
             return chars.emit(Token.Type.STRING);
         }
         else {
@@ -226,18 +520,17 @@ public final class Lexer {
 
 
     public void lexEscape() {
-        match("\\\\");
+        match(BACKSLASH);
 
-        if(!match("[bnrt\'\"\\\\]")) {
+        if(!match(ESCAPE)) {
             throw new ParseException ("Invalid escpae", chars.index);
         }
     }
 
     public Token lexOperator() {
-        if (match("[!=]"))
+        if (match(BANG_OR_EQUALS))
         {
-            System.out.println("= or !");
-            if(match("="))
+            if(match(EQUALS))
             {
                 return chars.emit(Token.Type.OPERATOR);
             }
@@ -245,7 +538,7 @@ public final class Lexer {
                 return chars.emit(Token.Type.OPERATOR);
             }
         }
-        if (match("[(&&)(||)]"))
+        if (match(LOGICAL))
         {
             return chars.emit(Token.Type.OPERATOR);
         }
@@ -285,6 +578,53 @@ public final class Lexer {
         //throw new UnsupportedOperationException(); //TODO (in Lecture)
     }
 
+    /**
+     * Equivalent to {@link #peek(String...)} for a single precompiled
+     * {@link CharClass}, used by the lex methods in their hot loops.
+     */
+    public boolean peek(CharClass pattern) {
+        return chars.has(0) && pattern.matches(chars.get(0));
+    }
+
+    /**
+     * Equivalent to {@link #peek(String...)} for precompiled {@link CharClass}
+     * patterns.
+     */
+    public boolean peek(CharClass... patterns) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (!chars.has(i) || !patterns[i].matches(chars.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Equivalent to {@link #match(String...)} for a single precompiled
+     * {@link CharClass}.
+     */
+    public boolean match(CharClass pattern) {
+        boolean peek = peek(pattern);
+        if (peek) {
+            chars.advance();
+        }
+        return peek;
+    }
+
+    /**
+     * Equivalent to {@link #match(String...)} for precompiled {@link CharClass}
+     * patterns.
+     */
+    public boolean match(CharClass... patterns) {
+        boolean peek = peek(patterns);
+        if (peek) {
+            for (int i = 0; i < patterns.length; ++i) {
+                chars.advance();
+            }
+        }
+        return peek;
+    }
+
     /**
      * A helper class maintaining the input string, current index of the char
      * stream, and the current length of the token being matched.
@@ -292,19 +632,81 @@ public final class Lexer {
      * You should rely on peek/match for state management in nearly all cases.
      * The only field you need to access is {@link #index} for any {@link
      * ParseException} which is thrown.
+     *
+     * Besides a {@link String}, the input may be a {@link Reader}, in which
+     * case only a sliding window of the input from the start of the current
+     * token is held in memory, or UTF-8 bytes (including a memory mapped
+     * {@link FileChannel}), which are lexed without decoding anything but
+     * non-ASCII characters. Token literals and indices (in characters) are the
+     * same regardless of the input.
      */
     public static final class CharStream {
 
-        private final String input;
+        private final CharSource input;
         private int index = 0;
         private int length = 0;
+        private boolean decode = false;
 
         public CharStream(String input) {
+            this(CharSource.of(input));
+        }
+
+        public CharStream(Reader input) {
+            this(CharSource.of(input));
+        }
+
+        /**
+         * Creates a char stream over the characters of the input from start to
+         * end. Indices are still relative to the start of the whole input.
+         */
+        CharStream(String input, int start, int end) {
+            this(CharSource.of(input, end));
+            this.index = start;
+        }
+
+        /**
+         * Creates a char stream over the characters of the sequence from
+         * start onward, with indices relative to the start of the sequence.
+         */
+        CharStream(CharSequence input, int start) {
+            this(CharSource.of(input));
+            this.index = start;
+        }
+
+        /**
+         * Creates a char stream over UTF-8 (or ASCII) bytes, see {@link
+         * #CharStream(ByteBuffer)}.
+         */
+        public CharStream(byte[] input) {
+            this(ByteBuffer.wrap(input));
+        }
+
+        /**
+         * Creates a char stream over the remaining UTF-8 (or ASCII) bytes of
+         * the buffer. Since the grammar is ASCII outside of literals, ASCII
+         * bytes are used as characters directly and only non-ASCII bytes are
+         * decoded, with malformed input replaced by {@code U+FFFD} the same as
+         * {@code new String(bytes, UTF_8)}.
+         */
+        public CharStream(ByteBuffer input) {
+            this(CharSource.of(input));
+        }
+
+        private CharStream(CharSource input) {
             this.input = input;
         }
 
+        /**
+         * Creates a char stream over the contents of the channel, which must
+         * be ASCII or UTF-8, by mapping it into memory and lexing the bytes as
+         * in {@link #CharStream(ByteBuffer)}.
+         */
+        public static CharStream map(FileChannel channel) throws IOException {
+            return new CharStream(CharSource.map(channel));
+        }
+
         public boolean has(int offset) {
-            return index + offset < input.length();
+            return input.has(index + offset);
         }
 
         public char get(int offset) {
@@ -316,14 +718,39 @@ public final class Lexer {
             length++;
         }
 
+        /**
+         * Moves back over the last character of the current token.
+         */
+        void retreat() {
+            index--;
+            length--;
+        }
+
         public void skip() {
             length = 0;
+            input.release(index);
         }
 
         public Token emit(Token.Type type) {
             int start = index - length;
+            String literal = input.substring(start, index);
+            Token token = decode && type != Token.Type.IDENTIFIER
+                    ? new Token(type, literal, start, SymbolTable.NONE, Literals.decode(type, literal))
+                    : new Token(type, literal, start);
+            skip();
+            return token;
+        }
+
+        /**
+         * Emits an identifier, interning its literal so the token carries the
+         * symbol id and canonical string from the table.
+         */
+        public Token emit(SymbolTable symbols) {
+            int start = index - length;
+            int symbol = symbols.intern(input.substring(start, index));
+            Token token = new Token(Token.Type.IDENTIFIER, symbols.getName(symbol), start, symbol);
             skip();
-            return new Token(type, input.substring(start, index), start);
+            return token;
         }
 
     }
@@ -0,0 +1,31 @@
+package plc.project;
+
+import java.io.PrintStream;
+
+/**
+ * Receives the tokens produced by a {@link Lexer}, for example to trace the
+ * lexer while debugging or to count tokens for metrics. Attach a listener with
+ * {@link Lexer#setListener(LexerListener)}.
+ *
+ * By default the lexer uses {@link #NONE}, so lexing does no I/O unless a
+ * listener is explicitly attached.
+ */
+@FunctionalInterface
+public interface LexerListener {
+
+    LexerListener NONE = token -> {};
+
+    /**
+     * Called with each token as it is lexed, in order.
+     */
+    void onToken(Token token);
+
+    /**
+     * Returns a listener printing each token to the given stream, which is
+     * what the lexer used to do unconditionally.
+     */
+    static LexerListener printing(PrintStream out) {
+        return out::println;
+    }
+
+}
@@ -0,0 +1,72 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Maps character offsets in a source to lines and columns, both starting at
+ * 1. The start of each line is found in one pass when the index is created,
+ * after which a lookup is a binary search over the line starts. A line ends at
+ * {@code \n}, {@code \r\n} or a lone {@code \r}.
+ */
+public final class LineIndex {
+
+    private final int[] starts;
+    private final int count;
+    private final int length;
+
+    public LineIndex(CharSequence source) {
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || c == '\r' && (i + 1 == source.length() || source.charAt(i + 1) != '\n')) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * count);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.starts = starts;
+        this.count = count;
+        this.length = source.length();
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    /**
+     * Returns the line containing the offset, where an offset at the end of
+     * the source is on the last line.
+     */
+    public int getLine(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of the source.");
+        }
+        int line = Arrays.binarySearch(starts, 0, count, offset);
+        return line >= 0 ? line + 1 : -line - 1;
+    }
+
+    public int getColumn(int offset) {
+        return offset - starts[getLine(offset) - 1] + 1;
+    }
+
+    /**
+     * Returns the offset of the first character of the given line.
+     */
+    public int getLineStart(int line) {
+        if (line < 1 || line > count) {
+            throw new IndexOutOfBoundsException("Line " + line + " is outside of the source.");
+        }
+        return starts[line - 1];
+    }
+
+    /**
+     * Returns the position of the offset as {@code line:column}.
+     */
+    public String format(int offset) {
+        int line = getLine(offset);
+        return line + ":" + (offset - starts[line - 1] + 1);
+    }
+
+}
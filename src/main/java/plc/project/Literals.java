@@ -0,0 +1,125 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Decodes the literals of tokens into their values, used by the {@link Lexer}
+ * to attach values to tokens while lexing and by the {@link Parser} for tokens
+ * which don't have one. Each literal is decoded in a single pass over its
+ * characters.
+ */
+final class Literals {
+
+    /**
+     * The number of digits which always fit in a long.
+     */
+    private static final int LONG_DIGITS = 18;
+
+    private Literals() {}
+
+    /**
+     * Returns the value of a literal of the given type, a {@link BigInteger},
+     * {@link BigDecimal}, {@link Character} or {@link String}, or null if the
+     * type is not a literal or the literal is not a valid value (such as the
+     * integer {@code "-"} the lexer falls back to).
+     */
+    static Object decode(Token.Type type, String literal) {
+        switch (type) {
+            case INTEGER:
+                return decodeInteger(literal);
+            case DECIMAL:
+                return decodeDecimal(literal);
+            case CHARACTER:
+                return decodeCharacter(literal);
+            case STRING:
+                return decodeString(literal);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decodes an integer through a long when it has few enough digits, rather
+     * than parsing it as a {@link BigInteger} directly.
+     */
+    static BigInteger decodeInteger(String literal) {
+        int start = literal.startsWith("-") ? 1 : 0;
+        if (literal.length() == start) {
+            return null;
+        } else if (literal.length() - start > LONG_DIGITS) {
+            return new BigInteger(literal);
+        }
+        long value = 0;
+        for (int i = start; i < literal.length(); i++) {
+            value = value * 10 + (literal.charAt(i) - '0');
+        }
+        return BigInteger.valueOf(start == 1 ? -value : value);
+    }
+
+    /**
+     * Decodes a decimal as a long unscaled value and a scale when it has few
+     * enough digits, which is equal (including the scale) to parsing it as a
+     * {@link BigDecimal}.
+     */
+    static BigDecimal decodeDecimal(String literal) {
+        int start = literal.startsWith("-") ? 1 : 0;
+        if (literal.length() - start - 1 > LONG_DIGITS) {
+            return new BigDecimal(literal);
+        }
+        long unscaled = 0;
+        int scale = 0;
+        for (int i = start; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '.') {
+                scale = literal.length() - i - 1;
+            } else {
+                unscaled = unscaled * 10 + (c - '0');
+            }
+        }
+        return BigDecimal.valueOf(start == 1 ? -unscaled : unscaled, scale);
+    }
+
+    static Character decodeCharacter(String literal) {
+        char c = literal.charAt(1);
+        return c == '\\' ? escape(literal.charAt(2)) : c;
+    }
+
+    /**
+     * Decodes a string, only copying its characters if it contains an escape.
+     */
+    static String decodeString(String literal) {
+        int end = literal.length() - 1;
+        int escape = literal.indexOf('\\', 1);
+        if (escape < 0 || escape >= end) {
+            return literal.substring(1, end);
+        }
+        StringBuilder builder = new StringBuilder(end - 1);
+        builder.append(literal, 1, escape);
+        for (int i = escape; i < end; i++) {
+            char c = literal.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                builder.append(escape(literal.charAt(++i)));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static char escape(char c) {
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return c;
+        }
+    }
+
+}
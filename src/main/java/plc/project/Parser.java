@@ -1,10 +1,14 @@
 package plc.project;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The parser takes the sequence of tokens emitted by the lexer and turns that
@@ -12,8 +16,9 @@ import java.util.Optional;
  * Tree (AST).
  * <p>
  * The parser has a similar architecture to the lexer, just with {@link Token}s
- * instead of characters. As before, {@link #peek(Object...)} and {@link
- * #match(Object...)} are helpers to make the implementation easier.
+ * instead of characters. As before, {@link #peek(int)} and {@link
+ * #match(int)} are helpers to make the implementation easier; they compare
+ * the precomputed {@link TokenKind} of a token instead of its literal.
  * <p>
  * This type of parser is called <em>recursive descent</em>. Each rule in our
  * grammar will have it's own function, and reference to other rules correspond
@@ -21,10 +26,120 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    private static final int LOGICAL = 1;
+    private static final int COMPARISON = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    /**
+     * The precedence level of each binary operator by {@link TokenKind}, with
+     * 0 for kinds which are not binary operators, and the literal of each
+     * operator shared by the nodes of a compact AST. A new operator only needs
+     * a kind and an entry here.
+     */
+    private static final int[] PRECEDENCE = new int[TokenKind.COUNT];
+    private static final String[] OPERATORS = new String[TokenKind.COUNT];
+
+    static {
+        operator(TokenKind.AND, "&&", LOGICAL);
+        operator(TokenKind.OR, "||", LOGICAL);
+        operator(TokenKind.NOT_EQUAL, "!=", COMPARISON);
+        operator(TokenKind.EQUAL, "==", COMPARISON);
+        operator(TokenKind.GREATER, ">", COMPARISON);
+        operator(TokenKind.LESS, "<", COMPARISON);
+        operator(TokenKind.PLUS, "+", ADDITIVE);
+        operator(TokenKind.MINUS, "-", ADDITIVE);
+        operator(TokenKind.STAR, "*", MULTIPLICATIVE);
+        operator(TokenKind.BACKSLASH, "\\", MULTIPLICATIVE);
+        operator(TokenKind.CARET, "^", MULTIPLICATIVE);
+    }
+
+    private static void operator(int kind, String literal, int precedence) {
+        OPERATORS[kind] = literal;
+        PRECEDENCE[kind] = precedence;
+    }
+
+    private static final int MIN_CHUNK_SIZE = 1 << 12;
+
+    /**
+     * The child passed to a frame resumed after recovering from an exception
+     * in one of its statements, which is then skipped.
+     */
+    private static final Object RECOVERED = new Object();
+
     private final TokenStream tokens;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final List<Token> list;
+    private final TokenBuffer buffer;
+    private Diagnostics diagnostics;
+    private boolean compact;
+    private SpanTable spans;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this.tokens = new IteratorTokenStream(tokens.iterator());
+        this.list = tokens;
+        this.buffer = null;
+    }
+
+    /**
+     * Creates a parser reading tokens on demand, such as from {@link
+     * Lexer#tokens()}. Only a small window of tokens around the current
+     * position is ever held, so large programs can be lexed and parsed in
+     * roughly constant memory.
+     */
+    public Parser(Iterator<Token> tokens) {
+        this(new IteratorTokenStream(tokens));
+    }
+
+    /**
+     * Creates a parser reading directly from a {@link TokenBuffer}. Keywords
+     * and operators are matched against the buffer without materializing their
+     * literals.
+     */
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new BufferTokenStream(tokens, 0);
+        this.list = null;
+        this.buffer = tokens;
+    }
+
+    /**
+     * Creates a parser over the tokens from the given position, as used by
+     * {@link IncrementalParser} to parse a single declaration.
+     */
+    Parser(List<Token> tokens, int position) {
+        this(new IteratorTokenStream(tokens.listIterator(position), position));
+    }
+
+    private Parser(TokenStream tokens) {
+        this.tokens = tokens;
+        this.list = null;
+        this.buffer = null;
+    }
+
+    /**
+     * Returns the position of the next token in the parser's tokens.
+     */
+    int getPosition() {
+        return tokens.index;
+    }
+
+    /**
+     * Sets whether to build a compact AST, which takes less memory for large
+     * programs. The children of each node are stored in exact-size immutable
+     * lists, binary operators share one string per operator, and {@code TRUE},
+     * {@code FALSE} and {@code NIL} are shared nodes whose types are fixed (so
+     * unlike other literals, they are typed before analysis).
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Sets a table to record the source span of every node in, see {@link
+     * SpanTable}. Without one, the parser does no span bookkeeping at all.
+     */
+    public void setSpans(SpanTable spans) {
+        this.spans = spans;
     }
 
     public int getIndex() {
@@ -36,49 +151,273 @@ public final class Parser {
      * Parses the {@code source} rule.
      */
     public Ast.Source parseSource() throws ParseException {
+        int start = start();
         List<Ast.Function> functions = new ArrayList<>();
         List<Ast.Global> globals = new ArrayList<>();
 
         // Add globals
-        while (peek("VAL") || peek("VAR") || peek("LIST")) {
+        while (peek(SymbolTable.VAL) || peek(SymbolTable.VAR) || peek(SymbolTable.LIST)) {
             Ast.Global global = parseGlobal();
             globals.add(global);
         }
         // Add functions
-        while (peek("FUN")) {
+        while (peek(SymbolTable.FUN)) {
             Ast.Function function = parseFunction();
             functions.add(function);
         }
 
-        return new Ast.Source(globals, functions);
+        return span(new Ast.Source(children(globals), children(functions)), start);
 
         //throw new UnsupportedOperationException(); //TODO
 
     }
 
+    /**
+     * Parses the {@code source} rule in the same way as {@link #parseSource()},
+     * but rather than throwing a {@link ParseException}, reports it to the
+     * diagnostics and continues after it, returning everything else which
+     * parsed. A statement which fails is skipped up to the next semicolon or
+     * the {@code END} of its block, and a global or function which fails is
+     * skipped up to the next declaration. A {@code FUN} ends any block before
+     * it, so a missing {@code END} does not swallow the next function; other
+     * than a statement starting with {@code FUN}, valid input is parsed exactly
+     * as by {@link #parseSource()}.
+     */
+    public Ast.Source parseSource(Diagnostics diagnostics) {
+        int start = start();
+        List<Ast.Function> functions = new ArrayList<>();
+        List<Ast.Global> globals = new ArrayList<>();
+        this.diagnostics = diagnostics;
+        try {
+            while (peek(SymbolTable.VAL) || peek(SymbolTable.VAR) || peek(SymbolTable.LIST)) {
+                try {
+                    globals.add(parseGlobal());
+                } catch (ParseException e) {
+                    diagnostics.report(e);
+                    while (tokens.has(0) && !peek(SymbolTable.VAL) && !peek(SymbolTable.VAR)
+                            && !peek(SymbolTable.LIST) && !peek(SymbolTable.FUN)) {
+                        tokens.advance();
+                    }
+                }
+            }
+            while (peek(SymbolTable.FUN)) {
+                try {
+                    functions.add(parseFunction());
+                } catch (ParseException e) {
+                    diagnostics.report(e);
+                    while (tokens.has(0) && !peek(SymbolTable.FUN)) {
+                        tokens.advance();
+                    }
+                }
+            }
+        } finally {
+            this.diagnostics = null;
+        }
+        return span(new Ast.Source(children(globals), children(functions)), start);
+    }
+
+    /**
+     * Parses the {@code source} rule in the same way as {@link #parseSource()},
+     * but into an {@link AstArena}. Each global and function is added to the
+     * arena as soon as it is parsed, so only one declaration exists as objects
+     * at a time. The spans of each declaration are recorded in a table of its
+     * own to give every row its offset, and then added to the parser's table,
+     * if any.
+     */
+    public AstArena parseArena() throws ParseException {
+        AstArena arena = new AstArena();
+        SpanTable table = spans;
+        SpanTable declaration = new SpanTable();
+        spans = declaration;
+        try {
+            arena.setOffset(AstArena.ROOT, start());
+            while (peek(SymbolTable.VAL) || peek(SymbolTable.VAR) || peek(SymbolTable.LIST)) {
+                add(arena, parseGlobal(), table);
+            }
+            while (peek(SymbolTable.FUN)) {
+                add(arena, parseFunction(), table);
+            }
+        } finally {
+            spans = table;
+        }
+        return arena;
+    }
+
+    /**
+     * Adds a declaration to the arena with the spans recorded while parsing
+     * it, which are then moved to the given table, if any.
+     */
+    private void add(AstArena arena, Ast declaration, SpanTable table) {
+        arena.add(declaration, spans);
+        if (table != null) {
+            table.putAll(spans);
+        }
+        spans.clear();
+    }
+
+    /**
+     * Parses the {@code source} rule in the same way as {@link
+     * #parseSource()}, but parses the functions in parallel on the given pool.
+     * This requires the parser to have been created from a {@link List} or a
+     * {@link TokenBuffer}.
+     *
+     * The globals are parsed first, then every {@code FUN} keyword after them
+     * is taken as the possible start of a function and parsed on its own over
+     * the same tokens, recording where it ends. The functions are assembled by
+     * following these ends from the first function, so a {@code FUN} which is
+     * not actually the start of a function is simply skipped. If a function
+     * fails to parse, the rest of the source is parsed sequentially from the
+     * start of that function so that the result (or exception) is always
+     * identical to {@link #parseSource()}.
+     */
+    public Ast.Source parseSourceParallel(ForkJoinPool pool) throws ParseException {
+        if (list == null && buffer == null) {
+            throw new IllegalStateException("Parallel parsing requires a parser created from a List or TokenBuffer.");
+        }
+        int size = list != null ? list.size() : buffer.size();
+        return parseSourceParallel(pool, Math.max(MIN_CHUNK_SIZE, size / (4 * pool.getParallelism())));
+    }
+
+    /**
+     * Parses the source in parallel on the common pool, see {@link
+     * #parseSourceParallel(ForkJoinPool)}.
+     */
+    public Ast.Source parseSourceParallel() throws ParseException {
+        return parseSourceParallel(ForkJoinPool.commonPool());
+    }
+
+    Ast.Source parseSourceParallel(ForkJoinPool pool, int chunkSize) throws ParseException {
+        int offset = start();
+        List<Ast.Global> globals = new ArrayList<>();
+        while (peek(SymbolTable.VAL) || peek(SymbolTable.VAR) || peek(SymbolTable.LIST)) {
+            globals.add(parseGlobal());
+        }
+
+        int start = tokens.index;
+        int size = list != null ? list.size() : buffer.size();
+        List<Integer> starts = new ArrayList<>();
+        for (int i = start; i < size; i++) {
+            int symbol = list != null ? list.get(i).getSymbol() : buffer.getSymbol(i);
+            if (symbol == SymbolTable.FUN) {
+                starts.add(i);
+            }
+        }
+
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        int first = 0;
+        while (first < starts.size()) {
+            int last = first + 1;
+            while (last < starts.size() && starts.get(last) - starts.get(first) < chunkSize) {
+                last++;
+            }
+            List<Integer> chunk = starts.subList(first, last);
+            tasks.add(() -> new Chunk(chunk));
+            first = last;
+        }
+
+        List<Ast.Function> functions = new ArrayList<>();
+        int position = start;
+        search:
+        for (Future<Chunk> future : pool.invokeAll(tasks)) {
+            Chunk chunk;
+            try {
+                chunk = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            if (spans != null) {
+                spans.putAll(chunk.spans);
+            }
+            for (int i = 0; i < chunk.starts.size(); i++) {
+                if (chunk.starts.get(i) != position) {
+                    continue;
+                } else if (chunk.functions[i] == null) {
+                    break search;
+                }
+                functions.add(chunk.functions[i]);
+                position = chunk.ends[i];
+            }
+        }
+        while (tokens.index < position) {
+            tokens.advance();
+        }
+        while (peek(SymbolTable.FUN)) {
+            functions.add(parseFunction());
+        }
+        return span(new Ast.Source(children(globals), children(functions)), offset);
+    }
+
+    /**
+     * Returns a parser over this parser's tokens from the given position.
+     */
+    private Parser from(int position) {
+        Parser parser = list != null ? new Parser(list, position) : new Parser(new BufferTokenStream(buffer, position));
+        parser.compact = compact;
+        return parser;
+    }
+
+    /**
+     * The functions starting at each {@code FUN} keyword of one chunk of the
+     * tokens for {@link #parseSourceParallel}, each parsed on its own, along
+     * with the position after each function. A function is null if it could
+     * not be parsed. When recording spans, the chunk has its own table, which
+     * is merged into the parser's.
+     */
+    private final class Chunk {
+
+        private final List<Integer> starts;
+        private final Ast.Function[] functions;
+        private final int[] ends;
+        private final SpanTable spans;
+
+        private Chunk(List<Integer> starts) {
+            this.starts = starts;
+            this.functions = new Ast.Function[starts.size()];
+            this.ends = new int[starts.size()];
+            this.spans = Parser.this.spans != null ? new SpanTable() : null;
+            for (int i = 0; i < starts.size(); i++) {
+                Parser parser = from(starts.get(i));
+                parser.spans = spans;
+                try {
+                    functions[i] = parser.parseFunction();
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                ends[i] = parser.tokens.index;
+            }
+        }
+
+    }
+
     /**
      * Parses the {@code field} rule. This method should only be called if the
      * next tokens start a field, aka {@code LET}.
      */
     public Ast.Global parseGlobal() throws ParseException {
-
-        while (peek("VAL") || peek("VAR") || peek("LIST")) {
-            Ast.Global result = null;
-            if (peek("LIST")) {
+        int start = start();
+        Ast.Global result = null;
+        switch (kind(0)) {
+            case SymbolTable.LIST:
                 result = parseList();
-            } else if (peek("VAL")) {
+                break;
+            case SymbolTable.VAL:
                 result = parseImmutable();
-            } else {
+                break;
+            case SymbolTable.VAR:
                 result = parseMutable();
-            }
-            if (!match(";")) {
-                throw new ParseException("Missing closing semi-colon", getIndex());
-            } else {
-                match(";");
-                return result;
-            }
+                break;
+            default:
+                throw new UnsupportedOperationException(); //TODO
+        }
+        if (!match(TokenKind.SEMICOLON)) {
+            throw new ParseException("Missing closing semi-colon", getIndex());
+        } else {
+            match(TokenKind.SEMICOLON);
+            return span(result, start);
         }
-        throw new UnsupportedOperationException(); //TODO
     }
 
     /**
@@ -88,24 +427,25 @@ public final class Parser {
     public Ast.Global parseList() throws ParseException {
         String name = null;
         List<Ast.Expression> exprList = new ArrayList<>();
-        match("LIST");
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("No identifier", getIndex());
+        match(SymbolTable.LIST);
+        if (!matchIdentifier()) throw new ParseException("No identifier", getIndex());
         name = tokens.get(-1).getLiteral();
         String listType = null;
-        if (!match(":") || !match(Token.Type.IDENTIFIER)) throw new ParseException("No type identifier", getIndex());
+        if (!match(TokenKind.COLON) || !matchIdentifier()) throw new ParseException("No type identifier", getIndex());
         listType = tokens.get(-1).getLiteral();
         //Token.Type listTypeName = tokens.get(-1).getType();
 
-        if (!match("=")) throw new ParseException("No =", getIndex());
-        if (!match("[")) throw new ParseException("No [", getIndex());
+        if (!match(TokenKind.ASSIGN)) throw new ParseException("No =", getIndex());
+        int start = start();
+        if (!match(TokenKind.LEFT_BRACKET)) throw new ParseException("No [", getIndex());
         Ast.Expression expr = parseExpression();
         exprList.add(expr);
-        while (match(",")) {
+        while (match(TokenKind.COMMA)) {
             expr = parseExpression();
             exprList.add(expr);
         }
-        if (!match("]")) throw new ParseException("Missing ]", getIndex());
-        Ast.Expression.PlcList plcList = new Ast.Expression.PlcList(exprList);
+        if (!match(TokenKind.RIGHT_BRACKET)) throw new ParseException("Missing ]", getIndex());
+        Ast.Expression.PlcList plcList = span(new Ast.Expression.PlcList(children(exprList)), start);
        // plcList.setType(Environment.getType(listType));
         return new Ast.Global(name, listType, true, Optional.of(plcList));
        // return new Ast.Global(name, true, Optional.of(plcList));
@@ -119,14 +459,14 @@ public final class Parser {
      */
     public Ast.Global parseMutable() throws ParseException {
         String name = null;
-        match("VAR");
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("Not identifier", getIndex());
+        match(SymbolTable.VAR);
+        if (!matchIdentifier()) throw new ParseException("Not identifier", getIndex());
         name = tokens.get(-1).getLiteral();
         String typeName = null;
-        if (!match(":")) throw new ParseException("Missing colon", getIndex());
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("Missing type identifier", getIndex());
+        if (!match(TokenKind.COLON)) throw new ParseException("Missing colon", getIndex());
+        if (!matchIdentifier()) throw new ParseException("Missing type identifier", getIndex());
         typeName = tokens.get(-1).getLiteral();
-        if (match("=")) {
+        if (match(TokenKind.ASSIGN)) {
             Ast.Expression expr = parseExpression();
             //return new Ast.Global(name, true, Optional.of(new Ast.Expression.Access(Optional.empty(), expr.toString())));
             //return new Ast.Global(name, true, Optional.of(new Ast.Expression.Access(Optional.empty(), tokens.get(-1).getLiteral())));
@@ -143,14 +483,14 @@ public final class Parser {
      */
     public Ast.Global parseImmutable() throws ParseException {
         String name = null;
-        match("VAL");
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("Not identifier", getIndex());
+        match(SymbolTable.VAL);
+        if (!matchIdentifier()) throw new ParseException("Not identifier", getIndex());
         name = tokens.get(-1).getLiteral();
         String typeName = null;
-        if (!match(":")) throw new ParseException("Missing colon", getIndex());
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("Missing type identifier", getIndex());
+        if (!match(TokenKind.COLON)) throw new ParseException("Missing colon", getIndex());
+        if (!matchIdentifier()) throw new ParseException("Missing type identifier", getIndex());
         typeName = tokens.get(-1).getLiteral();
-        if (!match("=")) throw new ParseException("Missing initialization", getIndex());
+        if (!match(TokenKind.ASSIGN)) throw new ParseException("Missing initialization", getIndex());
         Ast.Expression expr = parseExpression();
         //return new Ast.Global(name, false, Optional.of(new Ast.Expression.Access(Optional.empty(), tokens.get(-1).getLiteral())));
         return new Ast.Global(name, typeName, false, Optional.of(expr));
@@ -162,44 +502,45 @@ public final class Parser {
      * next tokens start a method, aka {@code DEF}.
      */
     public Ast.Function parseFunction() throws ParseException {
+        int start = start();
         String name = null;
         List<String> parameters = new ArrayList<>();
         List<Ast.Statement> statements = null;
         List<String> parameterTypeNames = new ArrayList<>();
         String returnTypeName = null;
 
-        match("FUN");
-        if (!match(Token.Type.IDENTIFIER)) throw new ParseException("Missing identifier", getIndex());
+        match(SymbolTable.FUN);
+        if (!matchIdentifier()) throw new ParseException("Missing identifier", getIndex());
         name = tokens.get(-1).getLiteral();
-        if (!match("(")) throw new ParseException("Missing opening parentheses", getIndex());
-        if (match(Token.Type.IDENTIFIER)) {
+        if (!match(TokenKind.LEFT_PAREN)) throw new ParseException("Missing opening parentheses", getIndex());
+        if (matchIdentifier()) {
             parameters.add(tokens.get(-1).getLiteral());
-            if (!match(":") || !match(Token.Type.IDENTIFIER))
+            if (!match(TokenKind.COLON) || !matchIdentifier())
                 throw new ParseException("Missing identifier", getIndex());
             parameterTypeNames.add(tokens.get(-1).getLiteral());
-            while (match(",")) {
-                match(Token.Type.IDENTIFIER);
+            while (match(TokenKind.COMMA)) {
+                matchIdentifier();
                 parameters.add(tokens.get(-1).getLiteral());
-                if (!match(":") || !match(Token.Type.IDENTIFIER))
+                if (!match(TokenKind.COLON) || !matchIdentifier())
                     throw new ParseException("Missing identifier", getIndex());
                 parameterTypeNames.add(tokens.get(-1).getLiteral());
             }
         }
-        if (!match(")")) throw new ParseException("Missing closing parentheses", getIndex());
+        if (!match(TokenKind.RIGHT_PAREN)) throw new ParseException("Missing closing parentheses", getIndex());
 
-        //if (!match(":") || !match(Token.Type.IDENTIFIER)) throw new ParseException("Missing type identifier", getIndex());
-        if (match("DO")) {
+        //if (!match(TokenKind.COLON) || !matchIdentifier()) throw new ParseException("Missing type identifier", getIndex());
+        if (match(SymbolTable.DO)) {
             statements = parseBlock();
-            if (!match("END")) throw new ParseException("Missing END", getIndex());
-            return new Ast.Function(name, parameters, parameterTypeNames, Optional.empty(),statements);
+            if (!match(SymbolTable.END)) throw new ParseException("Missing END", getIndex());
+            return span(new Ast.Function(name, children(parameters), children(parameterTypeNames), Optional.empty(), children(statements)), start);
         }
-        if (match(":")) {
-            if (match(Token.Type.IDENTIFIER)) {
+        if (match(TokenKind.COLON)) {
+            if (matchIdentifier()) {
                 returnTypeName = tokens.get(-1).getLiteral();
-                if (!match("DO")) throw new ParseException("Missing DO", getIndex());
+                if (!match(SymbolTable.DO)) throw new ParseException("Missing DO", getIndex());
                 statements = parseBlock();
-                if (!match("END")) throw new ParseException("Missing END", getIndex());
-                return new Ast.Function(name, parameters, parameterTypeNames, Optional.of(returnTypeName), statements);
+                if (!match(SymbolTable.END)) throw new ParseException("Missing END", getIndex());
+                return span(new Ast.Function(name, children(parameters), children(parameterTypeNames), Optional.of(returnTypeName), children(statements)), start);
             }
         }
         throw new ParseException("error unexpected token", getIndex());
@@ -211,19 +552,9 @@ public final class Parser {
      * Parses the {@code block} rule. This method should only be called if the
      * preceding token indicates the opening a block.
      */
+    @SuppressWarnings("unchecked")
     public List<Ast.Statement> parseBlock() throws ParseException {
-        List<Ast.Statement> statements = new ArrayList<>();
-        Ast.Statement statement = parseStatement();
-        statements.add(statement);
-
-
-        while (!peek("END")) {
-            statement = parseStatement();
-            statements.add(statement);
-        }
-        return statements;
-
-        //throw new UnsupportedOperationException(); //TODO
+        return (List<Ast.Statement>) run(new BlockFrame());
     }
 
     /**
@@ -232,29 +563,7 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Statement parseStatement() throws ParseException {
-        if (match("LET")) {
-            return parseDeclarationStatement();
-        } else if (match("SWITCH")) {
-            return parseSwitchStatement();
-        } else if (match("IF")) {
-            return parseIfStatement();
-        } else if (match("WHILE")) {
-            return parseWhileStatement();
-        } else if (match("RETURN")) {
-            return parseReturnStatement();
-        }
-
-        Ast.Expression left = parseExpression();
-        if (match("=")) {
-            Ast.Expression right = parseExpression();
-            if (match(";")) {
-                return new Ast.Statement.Assignment(left, right);
-            }
-            throw new ParseException("Missing semicolon", getIndex());
-        } else if (match(";")) {
-            return new Ast.Statement.Expression(left);
-        }
-        throw new ParseException("Error parsing statement", getIndex());
+        return (Ast.Statement) run(new StatementFrame());
     }
 
     /**
@@ -263,31 +572,31 @@ public final class Parser {
      * statement, aka {@code LET}.
      */
     public Ast.Statement.Declaration parseDeclarationStatement() throws ParseException {
-        match("LET");
+        match(SymbolTable.LET);
 
-        if (peek(Token.Type.IDENTIFIER)) {
+        if (peekIdentifier()) {
             Optional<String> typeIdentifier = Optional.empty();
             String identifier = tokens.get(0).getLiteral();
-            match(Token.Type.IDENTIFIER);
+            matchIdentifier();
 
-            if (match(":")) {
-                if (!match(Token.Type.IDENTIFIER)) {
+            if (match(TokenKind.COLON)) {
+                if (!matchIdentifier()) {
                     throw new ParseException("missing type identifier", getIndex());
                 } else {
                     typeIdentifier = Optional.of(tokens.get(-1).getLiteral());
                 }
             }
 
-            if (match("=")) {
+            if (match(TokenKind.ASSIGN)) {
                 Ast.Expression val = parseExpression();
-                if (match(";")) {
+                if (match(TokenKind.SEMICOLON)) {
                     return new Ast.Statement.Declaration(identifier, typeIdentifier, Optional.of(val));
                 } else {
 
                     throw new ParseException("Missing ending semicolon", getIndex());
                 }
             } else {
-                if (match(";")) {
+                if (match(TokenKind.SEMICOLON)) {
                     return new Ast.Statement.Declaration(identifier, typeIdentifier, Optional.empty());
                 } else {
                     throw new ParseException("Missing ending semicolon", getIndex());
@@ -304,32 +613,7 @@ public final class Parser {
      * {@code IF}.
      */
     public Ast.Statement.If parseIfStatement() throws ParseException {
-        if (match("DO")) {
-            throw new ParseException("Missing expression", getIndex());
-        }
-
-        List<Ast.Statement> if_statement = new ArrayList<>();
-        List<Ast.Statement> else_statement = new ArrayList<>();
-        Ast.Expression expression_val = parseExpression();
-
-        if (!match("DO")) {
-            throw new ParseException("Missing DO block", getIndex());
-        }
-
-        while (tokens.has(0) && !peek("END")) {
-            if_statement.add(parseStatement());
-            if (match("ELSE")) {
-                while (tokens.has(0) && !peek("END")) {
-                    else_statement.add(parseStatement());
-                }
-            }
-        }
-
-        if (match("END")) {
-            return new Ast.Statement.If(expression_val, if_statement, else_statement);
-        } else {
-            throw new ParseException("Missing END", getIndex());
-        }
+        return (Ast.Statement.If) run(new IfFrame());
     }
 
     /**
@@ -338,24 +622,7 @@ public final class Parser {
      * {@code SWITCH}.
      */
     public Ast.Statement.Switch parseSwitchStatement() throws ParseException {
-        if (peek("CASE") || peek("DEFAULT")) {
-            throw new ParseException("Missing expression", getIndex());
-        }
-
-        Ast.Expression expression_val = parseExpression();
-        List<Ast.Statement.Case> case_list = new ArrayList<>();
-
-        while (tokens.has(0) && !peek("END")) {
-            if (peek("CASE") || peek("DEFAULT")) {
-                case_list.add(parseCaseStatement());
-            }
-        }
-
-        if (match("END")) {
-            return new Ast.Statement.Switch(expression_val, case_list);
-        } else {
-            throw new ParseException("Missing END", getIndex());
-        }
+        return (Ast.Statement.Switch) run(new SwitchFrame());
     }
 
     /**
@@ -364,31 +631,7 @@ public final class Parser {
      * default block of a switch statement, aka {@code CASE} or {@code DEFAULT}.
      */
     public Ast.Statement.Case parseCaseStatement() throws ParseException {
-        List<Ast.Statement> statement_list = new ArrayList<>();
-
-        if (match("CASE")) {
-            Ast.Expression expression_val = parseExpression();
-            if (match(":")) {
-                while (tokens.has(0) && !peek("END")) {
-                    statement_list.add(parseStatement());
-                }
-                return new Ast.Statement.Case(Optional.of(expression_val), statement_list);
-            } else {
-                throw new ParseException("Missing :", getIndex());
-            }
-        }
-
-        if (match("DEFAULT")) {
-            while (tokens.has(0) && !peek("END")) {
-                statement_list.add(parseStatement());
-            }
-
-            if (!match("END")) throw new ParseException("missing END", getIndex());
-            match("END");
-            return new Ast.Statement.Case(Optional.empty(), statement_list);
-        }
-
-        throw new ParseException("Errorrrr", getIndex());
+        return (Ast.Statement.Case) run(new CaseFrame());
     }
 
     /**
@@ -397,26 +640,7 @@ public final class Parser {
      * {@code WHILE}.
      */
     public Ast.Statement.While parseWhileStatement() throws ParseException {
-        if (match("DO")) {
-            throw new ParseException("Missing expression", getIndex());
-        }
-
-        List<Ast.Statement> statement_list = new ArrayList<>();
-        Ast.Expression expression_val = parseExpression();
-
-        if (!match("DO")) {
-            throw new ParseException("Missing DO block", getIndex());
-        }
-
-        while (tokens.has(0) && !peek("END")) {
-            statement_list.add(parseStatement());
-        }
-
-        if (match("END")) {
-            return new Ast.Statement.While(expression_val, statement_list);
-        } else {
-            throw new ParseException("Missing END", getIndex());
-        }
+        return (Ast.Statement.While) run(new WhileFrame());
     }
 
     /**
@@ -427,7 +651,7 @@ public final class Parser {
     public Ast.Statement.Return parseReturnStatement() throws ParseException {
         Ast.Expression expression_val = parseExpression();
 
-        if (match(";")) {
+        if (match(TokenKind.SEMICOLON)) {
             return new Ast.Statement.Return(expression_val);
         } else {
             throw new ParseException("Missing ending semicolon", getIndex());
@@ -438,79 +662,35 @@ public final class Parser {
      * Parses the {@code expression} rule.
      */
     public Ast.Expression parseExpression() throws ParseException {
-        return parseLogicalExpression();
+        return (Ast.Expression) run(new BinaryFrame(LOGICAL));
     }
 
     /**
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expression parseLogicalExpression() throws ParseException {
-        Ast.Expression left = parseComparisonExpression();
-        while (match("&&") || match("||")) {
-            String op = tokens.get(-1).getLiteral();
-
-            if (!tokens.has(0)) {
-                throw new ParseException("Error", getIndex());
-            }
-
-            Ast.Expression right = parseComparisonExpression();
-            left = new Ast.Expression.Binary(op, left, right);
-        }
-        return left;
+        return (Ast.Expression) run(new BinaryFrame(LOGICAL));
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expression parseComparisonExpression() throws ParseException {
-        Ast.Expression left = parseAdditiveExpression();
-        while (match("!=") || match("==") || match(">") || match("<")) {
-            String op = tokens.get(-1).getLiteral();
-
-            if (!tokens.has(0)) {
-                throw new ParseException("Error", getIndex());
-            }
-
-            Ast.Expression right = parseAdditiveExpression();
-            left = new Ast.Expression.Binary(op, left, right);
-        }
-        return left;
+        return (Ast.Expression) run(new BinaryFrame(COMPARISON));
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        Ast.Expression left = parseMultiplicativeExpression();
-        while (match("+") || match("-")) {
-            String op = tokens.get(-1).getLiteral();
-
-            if (!tokens.has(0)) {
-                throw new ParseException("Error", getIndex());
-            }
-
-            Ast.Expression right = parseMultiplicativeExpression();
-            left = new Ast.Expression.Binary(op, left, right);
-        }
-        return left;
+        return (Ast.Expression) run(new BinaryFrame(ADDITIVE));
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
-        Ast.Expression left = parsePrimaryExpression();
-        while (match("*") || match("\\") || match("^")) {
-            String op = tokens.get(-1).getLiteral();
-
-            if (!tokens.has(0)) {
-                throw new ParseException("Error", getIndex());
-            }
-
-            Ast.Expression right = parsePrimaryExpression();
-            left = new Ast.Expression.Binary(op, left, right);
-        }
-        return left;
+        return (Ast.Expression) run(new BinaryFrame(MULTIPLICATIVE));
     }
 
     /**
@@ -520,181 +700,927 @@ public final class Parser {
      * not strictly necessary.
      */
     public Ast.Expression parsePrimaryExpression() throws ParseException {
-        if (peek("NIL")) {
-            match("NIL");
-            return new Ast.Expression.Literal(null);
-        } else if (peek("TRUE")) {
-            match("TRUE");
-            Boolean result = new Boolean("TRUE");
-            return new Ast.Expression.Literal(result);
-        } else if (peek("FALSE")) {
-            match("FALSE");
-            Boolean result = new Boolean("FALSE");
-            return new Ast.Expression.Literal(result);
-        } else if (peek(Token.Type.INTEGER)) {
-            BigInteger result = new BigInteger(this.tokens.get(0).getLiteral());
-            match(Token.Type.INTEGER);
-            return new Ast.Expression.Literal(result);
-        } else if (peek(Token.Type.DECIMAL)) {
-            BigDecimal result = new BigDecimal(this.tokens.get(0).getLiteral());
-            match(Token.Type.DECIMAL);
-            return new Ast.Expression.Literal(result);
-        } else if (peek(Token.Type.CHARACTER)) {
-            String newToken = this.tokens.get(0).getLiteral().replace("\'", "");
-            //String newToken = this.tokens.get(0).getLiteral().substring(1,this.tokens.get(0).getLiteral().length()-1);
-            //newToken = newToken.replace("\\n", "\n");
-            //System.out.println(newToken);
-            Character result = newToken.charAt(0);
-            switch (newToken) {
-                case "\\n":
-                    result = '\n';
-                    break;
-                case "\\t":
-                    result = '\t';
-                    break;
-                case "\\r":
-                    result = '\r';
-                    break;
-                case "\\b":
-                    result = '\b';
-                    break;
-                case "\\'":
-                    result = '\'';
-                    break;
-                case "\\\"":
-                    result = '\"';
-            }
-            result = new Character(result);
-            match(Token.Type.CHARACTER);
-            return new Ast.Expression.Literal(result);
-        } else if (peek(Token.Type.STRING)) {
-            String newToken = this.tokens.get(0).getLiteral().replace("\"", "");
-            newToken = newToken.replace("\\r", "\r");
-            newToken = newToken.replace("\\t", "\t");
-            newToken = newToken.replace("\\n", "\n");
-            newToken = newToken.replace("\\b", "\b");
-            newToken = newToken.replace("\\\"", "\"");
-            newToken = newToken.replace("\\\'", "\'");
-            newToken = newToken.replace("\\\\", "\\");
-            match(Token.Type.STRING);
-            return new Ast.Expression.Literal(newToken);
-        } else if (peek("(")) {
-            match("(");
-            Ast.Expression expr = parseExpression();
-            if (match(")")) {
-                return new Ast.Expression.Group(expr);
-            } else {
-                throw new ParseException("Error: no closing parentheses", getIndex());
-            }
-        } else if (peek(Token.Type.IDENTIFIER)) {
-            String token = this.tokens.get(0).getLiteral();
-            List<Ast.Expression> exprList = new ArrayList<>();
-            match(Token.Type.IDENTIFIER);
-            if (!peek("(")) {
-                if (!peek("[")) {
-                    return new Ast.Expression.Access(Optional.empty(), token);
-                } else {
-                    match("[");
-                    Ast.Expression expr = parseExpression();
-                    if (!peek("]")) {
-                        throw new ParseException("Missing closing bracket", getIndex());
-                    } else {
-                        match("]");
-                        // what to do here
-                        return new Ast.Expression.Access(Optional.of(expr), token);
-                    }
-                }
-            } else if (peek("(", ")")) {
-                match("(", ")");
-            } else {
-                match("(");
-                Ast.Expression expr = parseExpression();
-                exprList.add(expr);
-                while (match(",")) {
-                    expr = parseExpression();
-                    exprList.add(expr);
-                }
-                if (!peek(")")) throw new ParseException("Missing closing parentheses", getIndex());
-                else match(")");
-            }
-            return new Ast.Expression.Function(token, exprList);
+        return (Ast.Expression) run(new PrimaryFrame());
+    }
+
+    /**
+     * Returns the value of a literal token, as decoded by the lexer if it was
+     * asked to (see {@link Lexer#setDecodeLiterals(boolean)}).
+     */
+    private Object decode(Token token) throws ParseException {
+        Object value = token.getValue() != null ? token.getValue() : Literals.decode(token.getType(), token.getLiteral());
+        if (value == null) {
+            throw new ParseException("Invalid literal " + token.getLiteral(), token.getIndex());
         }
-        throw new ParseException("Error", getIndex());
+        return value;
     }
 
     /**
-     * As in the lexer, returns {@code true} if the current sequence of tokens
-     * matches the given patterns. Unlike the lexer, the pattern is not a regex;
-     * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
-     * <p>
-     * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * Returns the {@link TokenKind} of the token at the given offset, or
+     * {@link TokenKind#NONE} past the end of the tokens. Productions are
+     * chosen by switching on the kind rather than comparing literals.
      */
-    private boolean peek(Object... patterns) {
-        for (int i = 0; i < patterns.length; i++) {
-            if (!tokens.has(i)) {
-                return false;
-            } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
-                    return false;
-                }
-            } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
-                    return false;
-                }
-            } else {
-                throw new AssertionError("Invalid pattern object: " + patterns[i].getClass());
-            }
+    private int kind(int offset) {
+        return tokens.getKind(offset);
+    }
+
+    /**
+     * Returns {@code true} if the next token has the given kind, which for a
+     * keyword is its pre-assigned id in {@link SymbolTable}.
+     */
+    private boolean peek(int kind) {
+        return tokens.getKind(0) == kind;
+    }
+
+    /**
+     * Returns {@code true} if the next two tokens have the given kinds.
+     */
+    private boolean peek(int first, int second) {
+        return tokens.getKind(0) == first && tokens.getKind(1) == second;
+    }
+
+    /**
+     * As {@link #peek(int)}, but also advances the token stream.
+     */
+    private boolean match(int kind) {
+        boolean peek = peek(kind);
+        if (peek) {
+            tokens.advance();
         }
-        return true;
+        return peek;
     }
 
     /**
-     * As in the lexer, returns {@code true} if {@link #peek(Object...)} is true
-     * and advances the token stream.
+     * As {@link #peek(int, int)}, but also advances past both tokens.
      */
-    private boolean match(Object... patterns) {
-        boolean peek = peek(patterns);
+    private boolean match(int first, int second) {
+        boolean peek = peek(first, second);
         if (peek) {
-            for (int i = 0; i < patterns.length; i++) {
-                tokens.advance();
-            }
+            tokens.advance();
+            tokens.advance();
         }
         return peek;
     }
 
-    private static final class TokenStream {
+    /**
+     * Returns {@code true} if the next token is an identifier, including
+     * keywords.
+     */
+    private boolean peekIdentifier() {
+        return tokens.has(0) && tokens.getType(0) == Token.Type.IDENTIFIER;
+    }
 
-        private final List<Token> tokens;
-        private int index = 0;
+    /**
+     * Returns {@code true} if the next token ends a block of statements, which
+     * is {@code END} or, when recovering with diagnostics, the {@code FUN} of
+     * the next function after a missing {@code END}.
+     */
+    private boolean peekEnd() {
+        return peek(SymbolTable.END) || diagnostics != null && peek(SymbolTable.FUN);
+    }
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+    private boolean matchIdentifier() {
+        boolean peek = peekIdentifier();
+        if (peek) {
+            tokens.advance();
         }
+        return peek;
+    }
 
-        /**
-         * Returns true if there is a token at index + offset.
-         */
-        public boolean has(int offset) {
-            return index + offset < tokens.size();
+    /**
+     * Returns the precedence level of the binary operator with the given kind,
+     * or 0 if the kind is not a binary operator.
+     */
+    private static int precedence(int kind) {
+        return kind >= 0 ? PRECEDENCE[kind] : 0;
+    }
+
+    /**
+     * Parses a statement which contains no block, such as a declaration or an
+     * assignment, without a frame. Returns null without advancing if the next
+     * token starts a statement with a block, which is then parsed by the frame
+     * from {@link #blockStatement()}.
+     */
+    private Ast.Statement parseSimpleStatement() throws ParseException {
+        int start = start();
+        switch (kind(0)) {
+            case SymbolTable.LET:
+                tokens.advance();
+                return span(parseDeclarationStatement(), start);
+            case SymbolTable.RETURN:
+                tokens.advance();
+                return span(parseReturnStatement(), start);
+            case SymbolTable.SWITCH:
+            case SymbolTable.IF:
+            case SymbolTable.WHILE:
+                return null;
         }
 
-        /**
-         * Gets the token at index + offset.
-         */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        Ast.Expression left = parseExpression();
+        if (match(TokenKind.ASSIGN)) {
+            Ast.Expression right = parseExpression();
+            if (match(TokenKind.SEMICOLON)) {
+                return span(new Ast.Statement.Assignment(left, right), start);
+            }
+            throw new ParseException("Missing semicolon", getIndex());
+        } else if (match(TokenKind.SEMICOLON)) {
+            return span(new Ast.Statement.Expression(left), start);
         }
+        throw new ParseException("Error parsing statement", getIndex());
+    }
 
-        /**
-         * Advances to the next token, incrementing the index.
-         */
+    /**
+     * Advances past the keyword of a statement with a block and returns the
+     * frame parsing the rest of it.
+     */
+    private Frame blockStatement() {
+        Frame frame;
+        switch (kind(0)) {
+            case SymbolTable.SWITCH:
+                frame = new SwitchFrame();
+                break;
+            case SymbolTable.IF:
+                frame = new IfFrame();
+                break;
+            default:
+                frame = new WhileFrame();
+        }
+        tokens.advance();
+        return frame;
+    }
+
+    /**
+     * Parses the next statement of a block, returning null once the result is
+     * added to the statements or the frame parsing it otherwise.
+     */
+    private Frame parseStatement(List<Ast.Statement> statements) throws ParseException {
+        Ast.Statement statement = parseSimpleStatement();
+        if (statement == null) {
+            return blockStatement();
+        }
+        statements.add(statement);
+        return null;
+    }
+
+    /**
+     * Returns the children of a node as stored in the AST, which is the list
+     * itself or, for a compact AST, an exact-size immutable copy of it.
+     */
+    private <T> List<T> children(List<T> list) {
+        return compact ? ImmutableList.copyOf(list) : list;
+    }
+
+    /**
+     * Returns the index of the next token, where the node about to be parsed
+     * starts, or -1 if no spans are recorded.
+     */
+    private int start() {
+        if (spans == null) {
+            return -1;
+        }
+        return tokens.has(0) ? tokens.getIndex(0) : end();
+    }
+
+    /**
+     * Returns the index after the last token consumed.
+     */
+    private int end() {
+        return tokens.index == 0 ? 0 : tokens.getEnd(-1);
+    }
+
+    /**
+     * Records the span of a node from the given start to the end of the last
+     * token consumed, if recording spans, and returns the node.
+     */
+    private <T extends Ast> T span(T node, int start) {
+        if (spans != null) {
+            spans.put(node, start, end());
+        }
+        return node;
+    }
+
+    /**
+     * Parses a primary expression which contains no other expressions, such
+     * as a literal or a variable, without a frame. Returns null without
+     * advancing if the next tokens start any other primary expression (or
+     * none), which is then parsed by a {@link PrimaryFrame}.
+     */
+    private Ast.Expression parseSimplePrimary() throws ParseException {
+        int start = start();
+        switch (kind(0)) {
+            case SymbolTable.NIL:
+                tokens.advance();
+                return compact ? Ast.Expression.Literal.NIL : span(new Ast.Expression.Literal(null), start);
+            case SymbolTable.TRUE: {
+                tokens.advance();
+                if (compact) {
+                    return Ast.Expression.Literal.TRUE;
+                }
+                Boolean result = new Boolean("TRUE");
+                return span(new Ast.Expression.Literal(result), start);
+            }
+            case SymbolTable.FALSE: {
+                tokens.advance();
+                if (compact) {
+                    return Ast.Expression.Literal.FALSE;
+                }
+                Boolean result = new Boolean("FALSE");
+                return span(new Ast.Expression.Literal(result), start);
+            }
+            case TokenKind.INTEGER:
+            case TokenKind.DECIMAL:
+            case TokenKind.CHARACTER:
+            case TokenKind.STRING: {
+                Object result = decode(tokens.get(0));
+                tokens.advance();
+                return span(new Ast.Expression.Literal(result), start);
+            }
+            case TokenKind.LEFT_PAREN:
+                return null;
+        }
+        if (peekIdentifier() && kind(1) != TokenKind.LEFT_PAREN && kind(1) != TokenKind.LEFT_BRACKET) {
+            String name = tokens.get(0).getLiteral();
+            tokens.advance();
+            return span(new Ast.Expression.Access(Optional.empty(), name), start);
+        }
+        return null;
+    }
+
+    /**
+     * Parses a production with an explicit stack of frames instead of the
+     * Java call stack, so nesting depth is only limited by the heap. Each
+     * frame returns the child production it needs next, whose result is
+     * passed back into it once the child is complete. Nested calls share the
+     * stack of the parser, each only using the frames above where it started.
+     */
+    private Object run(Frame root) throws ParseException {
+        int base = frames.size();
+        Frame frame = root;
+        Object child = null;
+        try {
+            while (true) {
+                Frame next;
+                try {
+                    next = frame.resume(child);
+                } catch (ParseException e) {
+                    frame = recover(e, frame, base);
+                    child = RECOVERED;
+                    continue;
+                }
+                if (next != null) {
+                    frames.push(frame);
+                    frame = next;
+                    child = null;
+                } else if (frames.size() == base) {
+                    return frame.result;
+                } else {
+                    child = frame.result;
+                    frame = frames.pop();
+                }
+            }
+        } finally {
+            while (frames.size() > base) {
+                frames.pop();
+            }
+        }
+    }
+
+    /**
+     * Recovers from an exception in the given frame when parsing with
+     * diagnostics, returning the innermost frame parsing a list of statements
+     * after reporting the exception and skipping past the next semicolon or up
+     * to an {@code END}. The exception is rethrown if there is no such frame,
+     * or if the tokens end or reach a {@code FUN} first, in which case the
+     * block is never closed and {@link #parseSource(Diagnostics)} recovers
+     * instead.
+     */
+    private Frame recover(ParseException exception, Frame frame, int base) throws ParseException {
+        if (diagnostics == null) {
+            throw exception;
+        }
+        while (!frame.recovers()) {
+            if (frames.size() == base) {
+                throw exception;
+            }
+            frame = frames.pop();
+        }
+        while (tokens.has(0) && !peek(SymbolTable.END) && !peek(SymbolTable.FUN)) {
+            if (match(TokenKind.SEMICOLON)) {
+                diagnostics.report(exception);
+                return frame;
+            }
+            tokens.advance();
+        }
+        if (!peek(SymbolTable.END)) {
+            throw exception;
+        }
+        diagnostics.report(exception);
+        return frame;
+    }
+
+    /**
+     * A production being parsed by {@link #run(Frame)}. Statements nest
+     * through frames for their blocks but parse their expressions with {@link
+     * #parseExpression()} directly, which uses its own stack, so the Java stack
+     * depth stays constant either way.
+     */
+    private abstract class Frame {
+
+        protected int state = 0;
+        protected Object result;
+
+        /**
+         * The index of the first token of the production, for its span.
+         */
+        protected int start = start();
+
+        /**
+         * Continues the production with the result of the child returned by
+         * the previous call (null on the first call), returning the next child
+         * to parse or null once {@link #result} is set.
+         */
+        abstract Frame resume(Object child) throws ParseException;
+
+        /**
+         * Returns {@code true} if the frame is parsing a list of statements,
+         * and so can be resumed with {@link #RECOVERED} after one fails.
+         */
+        boolean recovers() {
+            return false;
+        }
+
+    }
+
+    /**
+     * Parses a chain of binary operators with at least the given precedence
+     * (precedence climbing). Operators are left associative, so the right
+     * operand of an operator only takes operators binding more tightly. This
+     * builds the same tree as a rule per precedence level, but parses each
+     * operand with a single frame instead of one per level.
+     */
+    private final class BinaryFrame extends Frame {
+
+        private static final int LEFT = 1;
+        private static final int RIGHT = 2;
+        private static final int OPERATOR = 3;
+
+        private final int minimum;
+        private Ast.Expression left;
+        private String op;
+
+        private BinaryFrame(int minimum) {
+            this.minimum = minimum;
+        }
+
+        /**
+         * Creates a frame continuing after an already parsed left operand,
+         * which started at the given index.
+         */
+        private BinaryFrame(int minimum, Ast.Expression left, int start) {
+            this.minimum = minimum;
+            this.left = left;
+            this.start = start;
+            state = OPERATOR;
+        }
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            switch (state) {
+                case LEFT:
+                    left = (Ast.Expression) child;
+                    break;
+                case RIGHT:
+                    left = span(new Ast.Expression.Binary(op, left, (Ast.Expression) child), start);
+                    break;
+                case OPERATOR:
+                    break;
+                default:
+                    left = parseSimplePrimary();
+                    if (left == null) {
+                        state = LEFT;
+                        return new PrimaryFrame();
+                    }
+            }
+            while (true) {
+                int precedence = precedence(kind(0));
+                if (precedence < minimum) {
+                    result = left;
+                    return null;
+                }
+                op = compact ? OPERATORS[kind(0)] : tokens.get(0).getLiteral();
+                tokens.advance();
+
+                if (!tokens.has(0)) {
+                    throw new ParseException("Error", getIndex());
+                }
+
+                // the right operand only needs a frame if it is nested or
+                // followed by an operator binding more tightly
+                int rightStart = start();
+                Ast.Expression right = parseSimplePrimary();
+                state = RIGHT;
+                if (right == null) {
+                    return new BinaryFrame(precedence + 1);
+                } else if (precedence(kind(0)) > precedence) {
+                    return new BinaryFrame(precedence + 1, right, rightStart);
+                }
+                left = span(new Ast.Expression.Binary(op, left, right), start);
+            }
+        }
+
+    }
+
+    /**
+     * Parses the {@code primary-expression} rule, with frames for the
+     * expressions of groups, offsets and arguments.
+     */
+    private final class PrimaryFrame extends Frame {
+
+        private static final int GROUP = 1;
+        private static final int OFFSET = 2;
+        private static final int ARGUMENT = 3;
+
+        private String name;
+        private List<Ast.Expression> arguments;
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            switch (state) {
+                case GROUP:
+                    if (match(TokenKind.RIGHT_PAREN)) {
+                        result = span(new Ast.Expression.Group((Ast.Expression) child), start);
+                        return null;
+                    } else {
+                        throw new ParseException("Error: no closing parentheses", getIndex());
+                    }
+                case OFFSET:
+                    if (!peek(TokenKind.RIGHT_BRACKET)) {
+                        throw new ParseException("Missing closing bracket", getIndex());
+                    } else {
+                        match(TokenKind.RIGHT_BRACKET);
+                        result = span(new Ast.Expression.Access(Optional.of((Ast.Expression) child), name), start);
+                        return null;
+                    }
+                case ARGUMENT:
+                    arguments.add((Ast.Expression) child);
+                    if (match(TokenKind.COMMA)) {
+                        return new BinaryFrame(LOGICAL);
+                    }
+                    if (!peek(TokenKind.RIGHT_PAREN)) throw new ParseException("Missing closing parentheses", getIndex());
+                    else match(TokenKind.RIGHT_PAREN);
+                    result = span(new Ast.Expression.Function(name, children(arguments)), start);
+                    return null;
+            }
+            result = parseSimplePrimary();
+            if (result != null) {
+                return null;
+            } else if (match(TokenKind.LEFT_PAREN)) {
+                state = GROUP;
+                return new BinaryFrame(LOGICAL);
+            } else if (peekIdentifier()) {
+                name = tokens.get(0).getLiteral();
+                arguments = new ArrayList<>();
+                tokens.advance();
+                // a variable without an offset is a simple primary, so this
+                // is either an offset or a function call
+                if (match(TokenKind.LEFT_BRACKET)) {
+                    state = OFFSET;
+                    return new BinaryFrame(LOGICAL);
+                } else if (match(TokenKind.LEFT_PAREN, TokenKind.RIGHT_PAREN)) {
+                    result = span(new Ast.Expression.Function(name, children(arguments)), start);
+                    return null;
+                }
+                match(TokenKind.LEFT_PAREN);
+                state = ARGUMENT;
+                return new BinaryFrame(LOGICAL);
+            }
+            throw new ParseException("Error", getIndex());
+        }
+
+    }
+
+    /**
+     * Parses the {@code block} rule, which always has a first statement.
+     */
+    private final class BlockFrame extends Frame {
+
+        private final List<Ast.Statement> statements = new ArrayList<>();
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 0) {
+                state = 1;
+                Frame next = parseStatement(statements);
+                if (next != null) {
+                    return next;
+                }
+            } else {
+                if (child != RECOVERED) {
+                    statements.add((Ast.Statement) child);
+                }
+            }
+            while (!peekEnd()) {
+                Frame next = parseStatement(statements);
+                if (next != null) {
+                    return next;
+                }
+            }
+            result = statements;
+            return null;
+        }
+
+        @Override
+        boolean recovers() {
+            return state != 0;
+        }
+
+    }
+
+    /**
+     * Parses the {@code statement} rule, with a frame for the statements
+     * containing blocks.
+     */
+    private final class StatementFrame extends Frame {
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 1) {
+                result = child;
+                return null;
+            }
+            result = parseSimpleStatement();
+            if (result != null) {
+                return null;
+            }
+            state = 1;
+            return blockStatement();
+        }
+
+    }
+
+    /**
+     * Parses an if statement, whose statements go to the else block once an
+     * {@code ELSE} follows one of them.
+     */
+    private final class IfFrame extends Frame {
+
+        private static final int THEN = 1;
+        private static final int ELSE = 2;
+
+        private Ast.Expression condition;
+        private final List<Ast.Statement> thenStatements = new ArrayList<>();
+        private final List<Ast.Statement> elseStatements = new ArrayList<>();
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 0) {
+                if (match(SymbolTable.DO)) {
+                    throw new ParseException("Missing expression", getIndex());
+                }
+                condition = parseExpression();
+                if (!match(SymbolTable.DO)) {
+                    throw new ParseException("Missing DO block", getIndex());
+                }
+                state = THEN;
+            } else if (state == THEN) {
+                if (child != RECOVERED) {
+                    thenStatements.add((Ast.Statement) child);
+                }
+                if (match(SymbolTable.ELSE)) {
+                    state = ELSE;
+                }
+            } else {
+                if (child != RECOVERED) {
+                    elseStatements.add((Ast.Statement) child);
+                }
+            }
+
+            while (tokens.has(0) && !peekEnd()) {
+                Frame next = parseStatement(state == THEN ? thenStatements : elseStatements);
+                if (next != null) {
+                    return next;
+                }
+                if (state == THEN && match(SymbolTable.ELSE)) {
+                    state = ELSE;
+                }
+            }
+            if (match(SymbolTable.END)) {
+                result = span(new Ast.Statement.If(condition, children(thenStatements), children(elseStatements)), start);
+                return null;
+            } else {
+                throw new ParseException("Missing END", getIndex());
+            }
+        }
+
+        @Override
+        boolean recovers() {
+            return state != 0;
+        }
+
+    }
+
+    /**
+     * Parses a switch statement, with a frame for each case.
+     */
+    private final class SwitchFrame extends Frame {
+
+        private Ast.Expression condition;
+        private final List<Ast.Statement.Case> cases = new ArrayList<>();
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 0) {
+                if (peek(SymbolTable.CASE) || peek(SymbolTable.DEFAULT)) {
+                    throw new ParseException("Missing expression", getIndex());
+                }
+                condition = parseExpression();
+                state = 1;
+            } else {
+                cases.add((Ast.Statement.Case) child);
+            }
+
+            if (tokens.has(0) && !peek(SymbolTable.END)) {
+                if (peek(SymbolTable.CASE) || peek(SymbolTable.DEFAULT)) {
+                    return new CaseFrame();
+                }
+                throw new ParseException("Expected CASE or DEFAULT", getIndex());
+            }
+
+            if (match(SymbolTable.END)) {
+                result = span(new Ast.Statement.Switch(condition, children(cases)), start);
+                return null;
+            } else {
+                throw new ParseException("Missing END", getIndex());
+            }
+        }
+
+    }
+
+    /**
+     * Parses a case or default block of a switch statement.
+     */
+    private final class CaseFrame extends Frame {
+
+        private static final int CASE = 1;
+        private static final int DEFAULT = 2;
+
+        private Ast.Expression value;
+        private final List<Ast.Statement> statements = new ArrayList<>();
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 0) {
+                if (match(SymbolTable.CASE)) {
+                    value = parseExpression();
+                    if (!match(TokenKind.COLON)) {
+                        throw new ParseException("Missing :", getIndex());
+                    }
+                    state = CASE;
+                } else if (match(SymbolTable.DEFAULT)) {
+                    state = DEFAULT;
+                } else {
+                    throw new ParseException("Errorrrr", getIndex());
+                }
+            } else {
+                if (child != RECOVERED) {
+                    statements.add((Ast.Statement) child);
+                }
+            }
+
+            while (tokens.has(0) && !peekEnd()) {
+                Frame next = parseStatement(statements);
+                if (next != null) {
+                    return next;
+                }
+            }
+            if (state == CASE) {
+                result = span(new Ast.Statement.Case(Optional.of(value), children(statements)), start);
+                return null;
+            }
+            if (!match(SymbolTable.END)) throw new ParseException("missing END", getIndex());
+            match(SymbolTable.END);
+            result = span(new Ast.Statement.Case(Optional.empty(), children(statements)), start);
+            return null;
+        }
+
+        @Override
+        boolean recovers() {
+            return state != 0;
+        }
+
+    }
+
+    /**
+     * Parses a while statement.
+     */
+    private final class WhileFrame extends Frame {
+
+        private Ast.Expression condition;
+        private final List<Ast.Statement> statements = new ArrayList<>();
+
+        @Override
+        Frame resume(Object child) throws ParseException {
+            if (state == 0) {
+                if (match(SymbolTable.DO)) {
+                    throw new ParseException("Missing expression", getIndex());
+                }
+                condition = parseExpression();
+                if (!match(SymbolTable.DO)) {
+                    throw new ParseException("Missing DO block", getIndex());
+                }
+                state = 1;
+            } else {
+                if (child != RECOVERED) {
+                    statements.add((Ast.Statement) child);
+                }
+            }
+
+            while (tokens.has(0) && !peekEnd()) {
+                Frame next = parseStatement(statements);
+                if (next != null) {
+                    return next;
+                }
+            }
+            if (match(SymbolTable.END)) {
+                result = span(new Ast.Statement.While(condition, children(statements)), start);
+                return null;
+            } else {
+                throw new ParseException("Missing END", getIndex());
+            }
+        }
+
+        @Override
+        boolean recovers() {
+            return state != 0;
+        }
+
+    }
+
+    private static abstract class TokenStream {
+
+        protected int index = 0;
+
+        /**
+         * Returns true if there is a token at index + offset.
+         */
+        public abstract boolean has(int offset);
+
+        /**
+         * Gets the token at index + offset.
+         */
+        public abstract Token get(int offset);
+
+        /**
+         * Gets the {@link TokenKind} of the token at index + offset, or {@link
+         * TokenKind#NONE} if there is no such token.
+         */
+        public abstract int getKind(int offset);
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public Token.Type getType(int offset) {
+            return get(offset).getType();
+        }
+
+        /**
+         * Gets the index in the source of the token at index + offset.
+         */
+        public int getIndex(int offset) {
+            return get(offset).getIndex();
+        }
+
+        /**
+         * Gets the index in the source after the token at index + offset.
+         */
+        public int getEnd(int offset) {
+            Token token = get(offset);
+            return token.getIndex() + token.getLiteral().length();
+        }
+
+        /**
+         * Advances to the next token, incrementing the index.
+         */
         public void advance() {
             index++;
         }
 
     }
 
+    /**
+     * Reads tokens from the source as they are needed into a ring buffer. The
+     * buffer covers the parser's lookahead (at most two tokens) as well as the
+     * previous token, which is used through {@code get(-1)}.
+     */
+    private static final class IteratorTokenStream extends TokenStream {
+
+        private static final int CAPACITY = 8;
+
+        private final Iterator<Token> source;
+        private final Token[] buffer = new Token[CAPACITY];
+        private final int[] kinds = new int[CAPACITY];
+        private final int start;
+        private int size;
+
+        private IteratorTokenStream(Iterator<Token> source) {
+            this(source, 0);
+        }
+
+        /**
+         * Creates a stream whose first token is at the given position, such as
+         * from a list iterator starting there.
+         */
+        private IteratorTokenStream(Iterator<Token> source, int start) {
+            this.source = source;
+            this.start = start;
+            this.index = start;
+            this.size = start;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            fill(index + offset);
+            return index + offset < size;
+        }
+
+        @Override
+        public Token get(int offset) {
+            int position = index + offset;
+            fill(position);
+            if (position < start || position >= size || position <= size - CAPACITY) {
+                throw new IndexOutOfBoundsException("Token " + position + " is outside of the buffered tokens.");
+            }
+            return buffer[position & (CAPACITY - 1)];
+        }
+
+        @Override
+        public int getKind(int offset) {
+            int position = index + offset;
+            fill(position);
+            return position < size ? kinds[position & (CAPACITY - 1)] : TokenKind.NONE;
+        }
+
+        /**
+         * Reads tokens from the source until the buffer contains the token at
+         * the given position or the source is exhausted.
+         */
+        private void fill(int position) {
+            if (position >= index + CAPACITY - 1) {
+                throw new IndexOutOfBoundsException("Lookahead of " + (position - index) + " tokens exceeds the buffer.");
+            }
+            while (size <= position && source.hasNext()) {
+                Token token = source.next();
+                buffer[size & (CAPACITY - 1)] = token;
+                kinds[size & (CAPACITY - 1)] = TokenKind.of(token);
+                size++;
+            }
+        }
+
+    }
+
+    /**
+     * Reads tokens directly from a {@link TokenBuffer}, only materializing a
+     * {@link Token} when the parser needs its literal.
+     */
+    private static final class BufferTokenStream extends TokenStream {
+
+        private final TokenBuffer tokens;
+
+        private BufferTokenStream(TokenBuffer tokens, int index) {
+            this.tokens = tokens;
+            this.index = index;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < tokens.size();
+        }
+
+        @Override
+        public Token get(int offset) {
+            return tokens.get(index + offset);
+        }
+
+        @Override
+        public Token.Type getType(int offset) {
+            return tokens.getType(index + offset);
+        }
+
+        @Override
+        public int getKind(int offset) {
+            return index + offset < tokens.size() ? tokens.getKind(index + offset) : TokenKind.NONE;
+        }
+
+        @Override
+        public int getIndex(int offset) {
+            return tokens.getIndex(index + offset);
+        }
+
+        @Override
+        public int getEnd(int offset) {
+            return tokens.getIndex(index + offset) + tokens.getLength(index + offset);
+        }
+
+    }
+
 }
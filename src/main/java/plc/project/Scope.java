@@ -2,15 +2,17 @@ package plc.project;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 public final class Scope {
 
     private final Scope parent;
     private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private final Map<String, Map<Integer, Environment.Function>> functions = new HashMap<>();
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -53,18 +55,20 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
+        Map<Integer, Environment.Function> overloads = functions.computeIfAbsent(name, key -> new HashMap<>());
+        if (overloads.containsKey(parameterTypes.size())) {
             throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
         } else {
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            overloads.put(func.getParameterTypes().size(), func);
             return func;
         }
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
+        Map<Integer, Environment.Function> overloads = functions.get(name);
+        if (overloads != null && overloads.containsKey(arity)) {
+            return overloads.get(arity);
         } else if (parent != null) {
             return parent.lookupFunction(name, arity);
         } else {
@@ -72,12 +76,22 @@ public final class Scope {
         }
     }
 
+    /**
+     * Returns the defined functions as {@code name/arity}, which is how they
+     * are identified in error messages.
+     */
+    private Set<String> functionNames() {
+        Set<String> names = new HashSet<>();
+        functions.forEach((name, overloads) -> overloads.keySet().forEach(arity -> names.add(name + "/" + arity)));
+        return names;
+    }
+
     @Override
     public String toString() {
         return "Scope{" +
                 "parent=" + parent +
                 ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", functions=" + functionNames() +
                 '}';
     }
 
@@ -0,0 +1,28 @@
+package plc.project;
+
+/**
+ * An error from analyzing or interpreting a node, with the source span of the
+ * innermost node which has one in the {@link SpanTable} given to the {@link
+ * Analyzer} or {@link Interpreter}. The original exception is the cause and
+ * has the same message.
+ */
+public final class SourceException extends RuntimeException {
+
+    private final int start;
+    private final int end;
+
+    public SourceException(String message, int start, int end, Throwable cause) {
+        super(message, cause);
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+}
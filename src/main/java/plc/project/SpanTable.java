@@ -0,0 +1,177 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * The source spans of the nodes of an AST, kept beside the tree rather than in
+ * it so that the nodes themselves stay the same size. A {@link Parser} given a
+ * table with {@link Parser#setSpans(SpanTable)} records the span of every node
+ * it creates, from the index of its first token to the end of its last.
+ * <p>
+ * Spans are appended to parallel arrays as they are recorded, which is all
+ * the parser pays for. The first lookup after recording indexes the new spans
+ * in an open addressing table keyed by node identity, so spans are only
+ * hashed when something (usually a diagnostic) actually looks one up. The
+ * shared literals of a compact AST (see {@link Parser#setCompact(boolean)})
+ * have no span, since one node stands for many positions. Use a {@link
+ * LineIndex} to turn an offset into a line and column.
+ */
+public final class SpanTable {
+
+    private Object[] nodes = new Object[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int count;
+
+    /**
+     * The position + 1 of the latest span of each indexed node, or 0 for an
+     * empty slot, covering the first {@link #indexed} spans.
+     */
+    private int[] slots = new int[0];
+    private int indexed;
+    private int size;
+
+    /**
+     * Records the span of a node, replacing any previous span.
+     */
+    public void put(Ast node, int start, int end) {
+        if (count == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * count);
+            starts = Arrays.copyOf(starts, 2 * count);
+            ends = Arrays.copyOf(ends, 2 * count);
+        }
+        nodes[count] = node;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Records every span of another table, such as one filled by a parser on
+     * another thread.
+     */
+    public void putAll(SpanTable other) {
+        for (int i = 0; i < other.count; i++) {
+            put((Ast) other.nodes[i], other.starts[i], other.ends[i]);
+        }
+    }
+
+    /**
+     * Removes every span.
+     */
+    public void clear() {
+        Arrays.fill(nodes, 0, count, null);
+        Arrays.fill(slots, 0);
+        count = 0;
+        indexed = 0;
+        size = 0;
+    }
+
+    public boolean contains(Ast node) {
+        return find(node) >= 0;
+    }
+
+    /**
+     * Returns the index of the first character of the node, or -1 if the node
+     * has no span.
+     */
+    public int getStart(Ast node) {
+        int position = find(node);
+        return position >= 0 ? starts[position] : -1;
+    }
+
+    /**
+     * Returns the index after the last character of the node, or -1 if the
+     * node has no span.
+     */
+    public int getEnd(Ast node) {
+        int position = find(node);
+        return position >= 0 ? ends[position] : -1;
+    }
+
+    /**
+     * Returns the number of nodes with a span.
+     */
+    public int size() {
+        index();
+        return size;
+    }
+
+    /**
+     * Returns the exception thrown while visiting a node as a {@link
+     * SourceException} with the span of the innermost node it was thrown in.
+     * That is the span of a {@link SourceException} among its causes, if an
+     * inner visit already located it (the analyzer often wraps the exceptions
+     * of its children), or else that of the node. If neither has a span the
+     * exception is returned unchanged.
+     */
+    public RuntimeException locate(RuntimeException exception, Ast node) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause == exception && cause instanceof SourceException) {
+                return exception;
+            } else if (cause instanceof SourceException) {
+                SourceException located = (SourceException) cause;
+                return new SourceException(exception.getMessage(), located.getStart(), located.getEnd(), exception);
+            }
+        }
+        int position = find(node);
+        if (position < 0) {
+            return exception;
+        }
+        return new SourceException(exception.getMessage(), starts[position], ends[position], exception);
+    }
+
+    /**
+     * Returns the position of the latest span of the node, or -1 if it has
+     * none.
+     */
+    private int find(Object node) {
+        index();
+        if (size == 0) {
+            return -1;
+        }
+        int slot = slot(node);
+        return slots[slot] - 1;
+    }
+
+    /**
+     * Adds the spans recorded since the last lookup to the index.
+     */
+    private void index() {
+        for (; indexed < count; indexed++) {
+            if (2 * (size + 1) > slots.length) {
+                grow();
+            }
+            int slot = slot(nodes[indexed]);
+            if (slots[slot] == 0) {
+                size++;
+            }
+            slots[slot] = indexed + 1;
+        }
+    }
+
+    /**
+     * Returns the slot holding the node, or the empty slot where it would be
+     * inserted (linear probing).
+     */
+    private int slot(Object node) {
+        int mask = slots.length - 1;
+        int hash = System.identityHashCode(node);
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (slots[slot] != 0 && nodes[slots[slot] - 1] != node) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] old = slots;
+        slots = new int[Math.max(64, 2 * old.length)];
+        for (int position : old) {
+            if (position != 0) {
+                slots[slot(nodes[position - 1])] = position;
+            }
+        }
+    }
+
+}
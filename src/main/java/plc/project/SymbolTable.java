@@ -0,0 +1,97 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns identifier names, giving each distinct name a stable integer id and
+ * a single canonical {@link String} instance. Keywords have the pre-assigned
+ * ids below in every table, so the {@link Parser} can dispatch on the id of a
+ * token instead of comparing literals.
+ *
+ * Since every occurrence of a name shares the canonical string, lookups of
+ * lexer-interned names in {@link Scope} still hash the name but use its cached
+ * hash code, and {@link String#equals(Object)} returns on identity without
+ * comparing the characters again.
+ */
+public final class SymbolTable {
+
+    public static final int NONE = -1;
+
+    public static final int VAL = 0;
+    public static final int VAR = 1;
+    public static final int LIST = 2;
+    public static final int FUN = 3;
+    public static final int DO = 4;
+    public static final int END = 5;
+    public static final int LET = 6;
+    public static final int SWITCH = 7;
+    public static final int CASE = 8;
+    public static final int DEFAULT = 9;
+    public static final int IF = 10;
+    public static final int ELSE = 11;
+    public static final int WHILE = 12;
+    public static final int RETURN = 13;
+    public static final int NIL = 14;
+    public static final int TRUE = 15;
+    public static final int FALSE = 16;
+
+    private static final String[] KEYWORDS = {
+            "VAL", "VAR", "LIST", "FUN", "DO", "END", "LET", "SWITCH", "CASE",
+            "DEFAULT", "IF", "ELSE", "WHILE", "RETURN", "NIL", "TRUE", "FALSE"
+    };
+
+    private static final Map<String, Integer> KEYWORD_IDS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            KEYWORD_IDS.put(KEYWORDS[i], i);
+        }
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>(KEYWORD_IDS);
+    private final List<String> names = new ArrayList<>();
+
+    public SymbolTable() {
+        for (String keyword : KEYWORDS) {
+            names.add(keyword);
+        }
+    }
+
+    /**
+     * Returns the pre-assigned id of the given keyword, or {@link #NONE} if
+     * the name is not a keyword.
+     */
+    public static int keyword(String name) {
+        Integer id = KEYWORD_IDS.get(name);
+        return id != null ? id : NONE;
+    }
+
+    /**
+     * Returns the id of the given name, assigning the next id if the name has
+     * not been seen before.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the canonical string for the given id.
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+}
@@ -8,17 +8,42 @@ public final class Token {
         DECIMAL,
         CHARACTER,
         STRING,
-        OPERATOR
+        OPERATOR,
+        /**
+         * Invalid input skipped by {@link Lexer#lex(Diagnostics)}, from the
+         * start of the invalid token to the next whitespace.
+         */
+        ERROR
     }
 
     private final Type type;
     private final String literal;
     private final int index;
+    private final int symbol;
+    private final Object value;
 
     public Token(Type type, String literal, int index) {
+        this(type, literal, index, type == Type.IDENTIFIER ? SymbolTable.keyword(literal) : SymbolTable.NONE);
+    }
+
+    /**
+     * Creates a token with the id its literal was interned as in a {@link
+     * SymbolTable}, which is only meaningful for identifiers.
+     */
+    public Token(Type type, String literal, int index, int symbol) {
+        this(type, literal, index, symbol, null);
+    }
+
+    /**
+     * Creates a token with the value of its literal already decoded, see
+     * {@link #getValue()}.
+     */
+    public Token(Type type, String literal, int index, int symbol, Object value) {
         this.type = type;
         this.literal = literal;
         this.index = index;
+        this.symbol = symbol;
+        this.value = value;
     }
 
     public Type getType() {
@@ -33,6 +58,25 @@ public final class Token {
         return index;
     }
 
+    /**
+     * Returns the symbol id of an identifier, or {@link SymbolTable#NONE}. A
+     * token created without a symbol table still has the pre-assigned id of a
+     * keyword, so keywords can always be compared by id.
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the decoded value of a literal token if the lexer was asked to
+     * decode literals (see {@link Lexer#setDecodeLiterals(boolean)}), which is
+     * a {@link java.math.BigInteger}, {@link java.math.BigDecimal}, {@link
+     * Character} or {@link String} for the respective types, or else null.
+     */
+    public Object getValue() {
+        return value;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof Token
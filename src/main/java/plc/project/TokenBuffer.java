@@ -0,0 +1,138 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * A compact list of tokens stored as parallel arrays of types, start indices
+ * and lengths over the original source, instead of one {@link Token} object
+ * (and literal string) per token. Literals are only materialized when asked
+ * for through {@link #getLiteral(int)} or {@link #get(int)}.
+ *
+ * Created by {@link Lexer#lexBuffer()} and consumed directly by {@link
+ * Parser#Parser(TokenBuffer)}.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final String source;
+    private final SymbolTable symbolTable;
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] symbols = new int[64];
+    private byte[] kinds = new byte[64];
+    private int size = 0;
+
+    public TokenBuffer(String source) {
+        this(source, null);
+    }
+
+    /**
+     * Creates a buffer whose identifier symbols were interned in the given
+     * table, allowing identifier literals to be materialized as the table's
+     * canonical strings.
+     */
+    public TokenBuffer(String source, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a token with the given type spanning length characters of the
+     * source from start.
+     */
+    public void add(Token.Type type, int start, int length) {
+        int symbol = type == Token.Type.IDENTIFIER
+                ? SymbolTable.keyword(source.substring(start, start + length))
+                : SymbolTable.NONE;
+        add(type, start, length, symbol);
+    }
+
+    /**
+     * Appends a token as in {@link #add(Token.Type, int, int)} with the given
+     * symbol id.
+     */
+    public void add(Token.Type type, int start, int length, int symbol) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            symbols = Arrays.copyOf(symbols, size * 2);
+            kinds = Arrays.copyOf(kinds, size * 2);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        symbols[size] = symbol;
+        kinds[size] = (byte) TokenKind.of(type, symbol, source, start, length);
+        size++;
+    }
+
+    public Token.Type getType(int i) {
+        checkIndex(i);
+        return TYPES[types[i]];
+    }
+
+    public int getIndex(int i) {
+        checkIndex(i);
+        return starts[i];
+    }
+
+    public int getLength(int i) {
+        checkIndex(i);
+        return lengths[i];
+    }
+
+    public int getSymbol(int i) {
+        checkIndex(i);
+        return symbols[i];
+    }
+
+    /**
+     * Returns the {@link TokenKind} of the token, computed when it was added.
+     */
+    int getKind(int i) {
+        checkIndex(i);
+        return kinds[i];
+    }
+
+    public String getLiteral(int i) {
+        checkIndex(i);
+        if (symbolTable != null && symbols[i] != SymbolTable.NONE) {
+            return symbolTable.getName(symbols[i]);
+        }
+        return source.substring(starts[i], starts[i] + lengths[i]);
+    }
+
+    /**
+     * Returns true if the literal of the token is equal to the given string,
+     * without materializing the literal.
+     */
+    public boolean isLiteral(int i, String literal) {
+        checkIndex(i);
+        return lengths[i] == literal.length() && source.regionMatches(starts[i], literal, 0, lengths[i]);
+    }
+
+    /**
+     * Materializes the token at the given position.
+     */
+    public Token get(int i) {
+        return new Token(getType(i), getLiteral(i), starts[i], symbols[i]);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for " + size + " tokens.");
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package plc.project;
+
+/**
+ * Precomputed int codes for tokens, which the {@link Parser} dispatches on
+ * with a switch instead of comparing literals. Keywords use their pre-assigned
+ * ids from {@link SymbolTable} as their kind, each operator used by the
+ * grammar has its own kind, and other tokens have a kind per type (any other
+ * operator is {@link #OPERATOR}). Like matching a literal, the kind of an
+ * operator doesn't depend on the type of the token.
+ */
+final class TokenKind {
+
+    /**
+     * The kind past the end of the tokens, which matches no production.
+     */
+    static final int NONE = SymbolTable.NONE;
+
+    static final int IDENTIFIER = SymbolTable.FALSE + 1;
+    static final int INTEGER = IDENTIFIER + 1;
+    static final int DECIMAL = IDENTIFIER + 2;
+    static final int CHARACTER = IDENTIFIER + 3;
+    static final int STRING = IDENTIFIER + 4;
+    static final int OPERATOR = IDENTIFIER + 5;
+    static final int ERROR = IDENTIFIER + 6;
+
+    static final int LEFT_PAREN = IDENTIFIER + 7;
+    static final int RIGHT_PAREN = IDENTIFIER + 8;
+    static final int LEFT_BRACKET = IDENTIFIER + 9;
+    static final int RIGHT_BRACKET = IDENTIFIER + 10;
+    static final int COMMA = IDENTIFIER + 11;
+    static final int SEMICOLON = IDENTIFIER + 12;
+    static final int COLON = IDENTIFIER + 13;
+    static final int ASSIGN = IDENTIFIER + 14;
+    static final int EQUAL = IDENTIFIER + 15;
+    static final int NOT_EQUAL = IDENTIFIER + 16;
+    static final int LESS = IDENTIFIER + 17;
+    static final int GREATER = IDENTIFIER + 18;
+    static final int AND = IDENTIFIER + 19;
+    static final int OR = IDENTIFIER + 20;
+    static final int PLUS = IDENTIFIER + 21;
+    static final int MINUS = IDENTIFIER + 22;
+    static final int STAR = IDENTIFIER + 23;
+    static final int BACKSLASH = IDENTIFIER + 24;
+    static final int CARET = IDENTIFIER + 25;
+
+    /**
+     * The number of kinds, for tables indexed by kind.
+     */
+    static final int COUNT = IDENTIFIER + 26;
+
+    private TokenKind() {}
+
+    static int of(Token token) {
+        return of(token.getType(), token.getSymbol(), token.getLiteral(), 0, token.getLiteral().length());
+    }
+
+    /**
+     * Returns the kind of a token whose literal is the given region of the
+     * source, without materializing the literal.
+     */
+    static int of(Token.Type type, int symbol, CharSequence source, int start, int length) {
+        if (symbol >= 0 && symbol < IDENTIFIER) {
+            return symbol;
+        }
+        // operators are matched by their literal whatever the type of the
+        // token, such as the INTEGER "-" token the lexer falls back to
+        int operator = operator(source, start, length);
+        if (operator != OPERATOR) {
+            return operator;
+        }
+        switch (type) {
+            case IDENTIFIER:
+                return IDENTIFIER;
+            case INTEGER:
+                return INTEGER;
+            case DECIMAL:
+                return DECIMAL;
+            case CHARACTER:
+                return CHARACTER;
+            case STRING:
+                return STRING;
+            case OPERATOR:
+                return OPERATOR;
+            default:
+                return ERROR;
+        }
+    }
+
+    private static int operator(CharSequence source, int start, int length) {
+        if (length == 0) {
+            return OPERATOR;
+        }
+        char c = source.charAt(start);
+        if (length == 1) {
+            switch (c) {
+                case '(':
+                    return LEFT_PAREN;
+                case ')':
+                    return RIGHT_PAREN;
+                case '[':
+                    return LEFT_BRACKET;
+                case ']':
+                    return RIGHT_BRACKET;
+                case ',':
+                    return COMMA;
+                case ';':
+                    return SEMICOLON;
+                case ':':
+                    return COLON;
+                case '=':
+                    return ASSIGN;
+                case '<':
+                    return LESS;
+                case '>':
+                    return GREATER;
+                case '+':
+                    return PLUS;
+                case '-':
+                    return MINUS;
+                case '*':
+                    return STAR;
+                case '\\':
+                    return BACKSLASH;
+                case '^':
+                    return CARET;
+                default:
+                    return OPERATOR;
+            }
+        } else if (length == 2) {
+            char d = source.charAt(start + 1);
+            if (c == '=' && d == '=') {
+                return EQUAL;
+            } else if (c == '!' && d == '=') {
+                return NOT_EQUAL;
+            } else if (c == '&' && d == '&') {
+                return AND;
+            } else if (c == '|' && d == '|') {
+                return OR;
+            }
+        }
+        return OPERATOR;
+    }
+
+}
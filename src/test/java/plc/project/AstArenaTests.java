@@ -0,0 +1,179 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Optional;
+
+final class AstArenaTests {
+
+    private static final String INPUT = String.join("\n",
+            "LIST values: Decimal = [1.5, -2.25];",
+            "VAR count: Integer = 0;",
+            "VAL name: String = \"program\";",
+            "FUN square(x: Integer): Integer DO",
+            "    RETURN x * x;",
+            "END",
+            "FUN main(): Integer DO",
+            "    LET y: Integer = square(count + 1);",
+            "    LET z;",
+            "    IF y > 1 DO",
+            "        print(name);",
+            "        z = NIL;",
+            "    ELSE",
+            "        count = count + 1;",
+            "    END",
+            "    WHILE y != 0 DO y = y - (1); END",
+            "    RETURN 0;",
+            "END"
+    );
+
+    @Test
+    void testParse() {
+        Ast.Source source = new Parser(new Lexer(INPUT).lex()).parseSource();
+        AstArena arena = new Parser(new Lexer(INPUT).lex()).parseArena();
+        Assertions.assertEquals(source, arena.get(AstArena.ROOT));
+        Assertions.assertEquals(source, AstArena.of(source).get(AstArena.ROOT));
+
+        int main = arena.getFirstChild(AstArena.ROOT);
+        for (int i = 0; i < 4; i++) {
+            main = arena.getNextSibling(main);
+        }
+        Assertions.assertEquals(AstArena.FUNCTION, arena.getKind(main));
+        Assertions.assertEquals("main", arena.getValue(main));
+        Assertions.assertEquals(INPUT.indexOf("FUN main"), arena.getOffset(main));
+        Assertions.assertEquals(AstArena.NONE, arena.getNextSibling(main));
+        Assertions.assertEquals(arena.size(), arena.getEnd(main));
+        Assertions.assertEquals(source.getFunctions().get(1), arena.get(main));
+    }
+
+    @Test
+    void testOffsets() {
+        AstArena arena = new Parser(new Lexer(INPUT).lex()).parseArena();
+        for (int node = AstArena.ROOT; node < arena.size(); node++) {
+            Assertions.assertTrue(arena.getOffset(node) >= 0, "node " + node);
+        }
+        int binary = AstArena.ROOT;
+        while (arena.getKind(binary) != AstArena.BINARY) {
+            binary++;
+        }
+        Assertions.assertEquals(INPUT.indexOf("x * x"), arena.getOffset(binary));
+        Assertions.assertEquals(INPUT.indexOf("x;"), arena.getOffset(arena.getNextSibling(arena.getFirstChild(binary))));
+
+        SpanTable spans = new SpanTable();
+        Parser parser = new Parser(new Lexer(INPUT).lex());
+        parser.setSpans(spans);
+        AstArena converted = AstArena.of(parser.parseSource(), spans);
+        for (int node = AstArena.ROOT; node < arena.size(); node++) {
+            Assertions.assertEquals(arena.getOffset(node), converted.getOffset(node), "node " + node);
+        }
+        Assertions.assertEquals(-1, AstArena.of(new Parser(new Lexer(INPUT).lex()).parseSource()).getOffset(binary));
+    }
+
+    @Test
+    void testAcceptDeclarations() {
+        AstArena arena = new Parser(new Lexer(INPUT).lex()).parseArena();
+        arena.accept(new Interpreter(new Scope(null)) {
+            @Override
+            public Environment.PlcObject visit(Ast.Source ast) {
+                Ast.Function first = ast.getFunctions().get(0);
+                Assertions.assertSame(first, ast.getFunctions().get(0));
+                Assertions.assertEquals("main", ast.getFunctions().get(1).getName());
+                Assertions.assertNotSame(first, ast.getFunctions().get(0));
+                Assertions.assertEquals(first, ast.getFunctions().get(0));
+                return Environment.NIL;
+            }
+        });
+    }
+
+    @Test
+    void testTraversal() {
+        Ast.Source source = new Parser(new Lexer(INPUT).lex()).parseSource();
+        AstArena arena = AstArena.of(source);
+        int binaries = 0;
+        for (int node = AstArena.ROOT; node < arena.getEnd(AstArena.ROOT); node++) {
+            if (arena.getKind(node) == AstArena.BINARY) {
+                binaries++;
+            }
+        }
+        Assertions.assertEquals(6, binaries);
+        Assertions.assertEquals(3, arena.getData(AstArena.ROOT));
+
+        int children = 0;
+        for (int child = arena.getFirstChild(AstArena.ROOT); child != AstArena.NONE; child = arena.getNextSibling(child)) {
+            children++;
+        }
+        Assertions.assertEquals(5, children);
+    }
+
+    @Test
+    void testAnalyze() {
+        Ast.Source source = new Parser(new Lexer(INPUT.substring(INPUT.indexOf("VAR"))).lex()).parseSource();
+        AstArena arena = AstArena.of(source);
+        arena.accept(new Analyzer(scope()));
+        new Analyzer(scope()).visit(source);
+
+        Ast.Source result = (Ast.Source) arena.get(AstArena.ROOT);
+        Assertions.assertEquals(Environment.Type.INTEGER, result.getGlobals().get(0).getVariable().getType());
+        Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) result.getFunctions().get(1).getStatements().get(0);
+        Ast.Expression.Function call = (Ast.Expression.Function) declaration.getValue().get();
+        Assertions.assertSame(result.getFunctions().get(0).getFunction(), call.getFunction());
+        Assertions.assertEquals(Environment.Type.INTEGER, ((Ast.Expression.Binary) call.getArguments().get(0)).getType());
+
+        for (int node = AstArena.ROOT; node < arena.size(); node++) {
+            if (arena.getKind(node) == AstArena.CALL && "square".equals(arena.getValue(node))) {
+                Assertions.assertEquals(Environment.Type.INTEGER, arena.getType(node));
+            }
+        }
+    }
+
+    @Test
+    void testInterpret() {
+        AstArena arena = new Parser(new Lexer(String.join("\n",
+                "VAR count: Integer = 1;",
+                "FUN square(x: Integer): Integer DO",
+                "    RETURN x * x;",
+                "END",
+                "FUN main(): Integer DO",
+                "    WHILE count < 10 DO count = count + 1; END",
+                "    RETURN square(count) + 2;",
+                "END"
+        )).lex()).parseArena();
+        Environment.PlcObject result = arena.accept(new Interpreter(new Scope(null)));
+        Assertions.assertEquals(BigInteger.valueOf(102), result.getValue());
+    }
+
+    @Test
+    void testDeepNesting() {
+        int depth = 100000;
+        Ast.Expression expression = new Ast.Expression.Literal(BigInteger.ONE);
+        for (int i = 0; i < depth; i++) {
+            expression = new Ast.Expression.Group(expression);
+        }
+        Ast.Source source = new Ast.Source(Arrays.asList(new Ast.Global("x", true, Optional.of(expression))), Arrays.asList());
+        AstArena arena = AstArena.of(source);
+        Assertions.assertEquals(depth + 3, arena.size());
+
+        // walks the tree iteratively, since the recursive equals of the AST
+        // would overflow the stack
+        Ast.Expression result = ((Ast.Source) arena.get(AstArena.ROOT)).getGlobals().get(0).getValue().get();
+        ArrayDeque<Ast.Expression> groups = new ArrayDeque<>();
+        while (result instanceof Ast.Expression.Group) {
+            groups.push(result);
+            result = ((Ast.Expression.Group) result).getExpression();
+        }
+        Assertions.assertEquals(depth, groups.size());
+        Assertions.assertEquals(new Ast.Expression.Literal(BigInteger.ONE), result);
+    }
+
+    private static Scope scope() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL);
+        scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        return scope;
+    }
+
+}
@@ -0,0 +1,203 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+final class AstCacheTests {
+
+    private static final String INPUT = String.join("\n",
+            "VAR count: Integer = 0;",
+            "FUN main(): Integer DO",
+            "    count = count + 1;",
+            "    RETURN count;",
+            "END"
+    );
+
+    @Test
+    void testParse() {
+        AstCache cache = new AstCache(1 << 20);
+        Ast.Source expected = new Parser(new Lexer(INPUT).lex()).parseSource();
+        Ast.Source first = cache.parse(INPUT);
+        Ast.Source second = cache.parse(INPUT);
+        Assertions.assertEquals(expected, first);
+        Assertions.assertEquals(expected, second);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testMutation() {
+        AstCache cache = new AstCache(1 << 20);
+        Ast.Source first = cache.parse(INPUT);
+        Ast.Expression.Literal literal = (Ast.Expression.Literal) first.getGlobals().get(0).getValue().get();
+        literal.setType(Environment.Type.INTEGER);
+        Ast.Source second = cache.parse(INPUT);
+        Assertions.assertNull(((Ast.Expression.Literal) second.getGlobals().get(0).getValue().get()).findType());
+    }
+
+    @Test
+    void testAnalyze() {
+        AstCache cache = new AstCache(1 << 20);
+        AtomicInteger analyzers = new AtomicInteger();
+        Ast.Source first = cache.analyze(INPUT, () -> {
+            analyzers.incrementAndGet();
+            Scope scope = new Scope(null);
+            scope.defineFunction("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL);
+            return new Analyzer(scope);
+        });
+        Ast.Source second = cache.analyze(INPUT, () -> {
+            throw new AssertionError("The analysis should be cached.");
+        });
+        Assertions.assertEquals(1, analyzers.get());
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(Environment.Type.INTEGER, second.getGlobals().get(0).getVariable().getType());
+    }
+
+    @Test
+    void testEviction() {
+        AstCache cache = new AstCache(1 << 20);
+        cache.parse(INPUT);
+        long size = cache.size();
+        cache = new AstCache(2 * size + size / 2);
+        String other = INPUT.replace("count", "other");
+        String third = INPUT.replace("count", "third");
+        cache.parse(INPUT);
+        cache.parse(other);
+        cache.parse(INPUT);
+        cache.parse(third);
+        Assertions.assertEquals(1, cache.getEvictions());
+        cache.parse(INPUT);
+        Assertions.assertEquals(2, cache.getHits());
+        cache.parse(other);
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void testParseException() {
+        AstCache cache = new AstCache(1 << 20);
+        Assertions.assertThrows(ParseException.class, () -> cache.parse("VAR x: Integer = 1"));
+        Assertions.assertThrows(ParseException.class, () -> cache.parse("VAR x: Integer = 1"));
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("ast-cache");
+        try {
+            Ast.Source expected = new AstCache(1 << 20, directory).parse(INPUT);
+            AstCache cache = new AstCache(1 << 20, directory);
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(1, cache.getDiskHits());
+            Assertions.assertEquals(0, cache.getMisses());
+
+            try (Stream<Path> files = Files.list(directory)) {
+                Path file = files.findFirst().get();
+                Files.write(file, new byte[] {1, 2, 3});
+            }
+            cache = new AstCache(1 << 20, directory);
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(1, cache.getMisses());
+            Assertions.assertEquals(expected, new AstCache(1 << 20, directory).parse(INPUT));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testDirectoryGarbage() throws IOException {
+        Path directory = Files.createTempDirectory("ast-cache");
+        try {
+            Ast.Source expected = new AstCache(1 << 20, directory).parse(INPUT);
+            Path file;
+            try (Stream<Path> files = Files.list(directory)) {
+                file = files.findFirst().get();
+            }
+            byte[] valid = Files.readAllBytes(file);
+            Random random = new Random(0);
+            for (int i = 0; i < 100; i++) {
+                // a current header followed by garbage, rather than a file
+                // which is rejected by its magic number or version
+                byte[] garbage = Arrays.copyOf(valid, 5 + random.nextInt(valid.length));
+                for (int j = 5; j < garbage.length; j++) {
+                    garbage[j] = (byte) random.nextInt();
+                }
+                Files.write(file, garbage);
+                AstCache cache = new AstCache(1 << 20, directory);
+                Assertions.assertEquals(expected, cache.parse(INPUT));
+                Assertions.assertEquals(1L, cache.getMisses(), "attempt " + i);
+                Assertions.assertTrue(Arrays.equals(valid, Files.readAllBytes(file)), "attempt " + i);
+            }
+
+            // a well-formed entry whose source counts of 1 global and 1
+            // function are changed to 0 and 2, making the global a function
+            byte[] confused = valid.clone();
+            Assertions.assertEquals(1, confused[confused.length - 2]);
+            confused[confused.length - 2] = 0;
+            confused[confused.length - 1] = 2;
+            Files.write(file, confused);
+            AstCache cache = new AstCache(1 << 20, directory);
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(0L, cache.getDiskHits());
+            Assertions.assertEquals(1L, cache.getMisses());
+            Assertions.assertTrue(Arrays.equals(valid, Files.readAllBytes(file)));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testDirectoryErrors() throws IOException {
+        Ast.Source expected = new AstCache(1 << 20).parse(INPUT);
+        Path file = Files.createTempFile("ast-cache", ".tmp");
+        try {
+            AstCache cache = new AstCache(1 << 20, file);
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(1L, cache.getMisses());
+            Assertions.assertEquals(2L, cache.getDiskErrors());
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(1L, cache.getHits());
+        } finally {
+            Files.delete(file);
+        }
+
+        Path directory = Files.createTempDirectory("ast-cache");
+        try {
+            new AstCache(1 << 20, directory).parse(INPUT);
+            Path entry;
+            try (Stream<Path> files = Files.list(directory)) {
+                entry = files.findFirst().get();
+            }
+            // a non-empty directory in place of the entry can be neither read
+            // nor replaced
+            Files.delete(entry);
+            Files.createFile(Files.createDirectory(entry).resolve("file"));
+            AstCache cache = new AstCache(1 << 20, directory);
+            Assertions.assertEquals(expected, cache.parse(INPUT));
+            Assertions.assertEquals(1L, cache.getMisses());
+            Assertions.assertEquals(2L, cache.getDiskErrors());
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(1L, files.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+final class AstSerializerTests {
+
+    @Test
+    void testParsed() throws IOException {
+        String input = String.join("\n",
+                "LIST values: Decimal = [1.5, -2.25, 123456789012345678901234567890.5];",
+                "VAL big: Integer = 123456789012345678901234567890;",
+                "VAR name: String = \"h\u00e9llo, \uD83D\uDE00!\\n.\";",
+                "FUN main(): Integer DO",
+                "    LET c: Character = '\u00e9';",
+                "    LET x;",
+                "    IF -1 < (big - 2) * 3 DO",
+                "        values[0] = NIL;",
+                "    ELSE",
+                "        print(TRUE, FALSE, c, f(), g(1, 2));",
+                "    END",
+                "    WHILE x != 0 DO x = x \\ 2 ^ 1; END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(source, roundTrip(source));
+    }
+
+    @Test
+    void testAnalyzed() throws IOException {
+        String input = String.join("\n",
+                "VAR count: Integer = 0;",
+                "VAL name: String = \"program\";",
+                "FUN square(x: Integer): Integer DO",
+                "    RETURN x * x;",
+                "END",
+                "FUN main(): Integer DO",
+                "    LET y: Integer = square(count + 1);",
+                "    IF y > 1 DO",
+                "        print(name);",
+                "    ELSE",
+                "        count = count + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        Scope scope = new Scope(null);
+        scope.defineFunction("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL);
+        new Analyzer(scope).visit(source);
+        Ast.Source result = roundTrip(source);
+        Assertions.assertEquals(source, result);
+
+        Ast.Function main = result.getFunctions().get(1);
+        Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) main.getStatements().get(0);
+        Assertions.assertSame(Environment.Type.INTEGER, declaration.getVariable().getType());
+        Ast.Expression.Function call = (Ast.Expression.Function) declaration.getValue().get();
+        Assertions.assertSame(result.getFunctions().get(0).getFunction(), call.getFunction());
+        Ast.Expression.Binary argument = (Ast.Expression.Binary) call.getArguments().get(0);
+        Assertions.assertSame(result.getGlobals().get(0).getVariable(), ((Ast.Expression.Access) argument.getLeft()).getVariable());
+    }
+
+    @Test
+    void testDeepNesting() throws IOException {
+        int depth = 100000;
+        Ast.Expression expression = new Ast.Expression.Literal(BigInteger.ONE);
+        for (int i = 0; i < depth; i++) {
+            expression = new Ast.Expression.Group(expression);
+        }
+        Ast.Source source = new Ast.Source(Arrays.asList(new Ast.Global("x", true, Optional.of(expression))), Arrays.asList());
+        Ast.Expression result = roundTrip(source).getGlobals().get(0).getValue().get();
+        for (int i = 0; i < depth; i++) {
+            result = ((Ast.Expression.Group) result).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expression.Literal(BigInteger.ONE), result);
+    }
+
+    @Test
+    void testVersion() throws IOException {
+        byte[] bytes = write(new Parser(new Lexer("VAR x: Integer = 1;").lex()).parseSource());
+        bytes[4] = (byte) (AstSerializer.VERSION + 1);
+        IOException exception = Assertions.assertThrows(IOException.class, () -> read(bytes));
+        Assertions.assertTrue(exception.getMessage().contains("version"), exception.getMessage());
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        byte[] bytes = write(new Parser(new Lexer("VAR x: Integer = 1;").lex()).parseSource());
+        Assertions.assertThrows(IOException.class, () -> read(Arrays.copyOf(bytes, bytes.length - 1)));
+        Assertions.assertThrows(IOException.class, () -> read(new byte[0]));
+        // tags 1 (source), 2 (global) and 3 (function); 1 is a new string
+        // followed by its length and bytes
+        Assertions.assertThrows(IOException.class, () -> read(data(1, -1, 1)));
+        Assertions.assertThrows(IOException.class, () -> read(data(3, 1, 1, 'f', 0, 0, 0, -1)));
+        Assertions.assertThrows(IOException.class, () -> read(data(3, 1, 1, 'f', 0, 0, 0, 5)));
+        Assertions.assertThrows(IOException.class, () -> read(data(3, 1, 1, 'f', -1)));
+        Assertions.assertThrows(IOException.class, () -> read(data(3, 1, 1, 'f', Integer.MAX_VALUE, 0)));
+        Assertions.assertThrows(IOException.class, () -> read(data(2, 1, -1)));
+        Assertions.assertThrows(IOException.class, () -> read(data(2, 1, Integer.MAX_VALUE, 'x')));
+    }
+
+    @Test
+    void testWrongNodeType() throws IOException {
+        byte[] bytes = write(new Parser(new Lexer("FUN f() DO x; END\nFUN g() DO y; END").lex()).parseSource());
+        Assertions.assertEquals(2, bytes[bytes.length - 1]);
+        // the trailing source counts of 0 globals and 2 functions as 1 and 1
+        bytes[bytes.length - 2] = 1;
+        bytes[bytes.length - 1] = 1;
+        Assertions.assertThrows(IOException.class, () -> read(bytes));
+        // an empty function f, then a global x whose value is f
+        Assertions.assertThrows(IOException.class, () -> read(data(3, 1, 1, 'f', 0, 0, 0, 0, 0, 2, 1, 1, 'x', 0, 0, 1, 0, 1, 1, 0)));
+        Assertions.assertNotNull(read(data(3, 1, 1, 'f', 0, 0, 0, 0, 0, 1, 0, 1)));
+    }
+
+    private static Ast.Source roundTrip(Ast.Source source) throws IOException {
+        return read(write(source));
+    }
+
+    private static byte[] write(Ast.Source source) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AstSerializer.write(source, Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the header of the current version followed by the given values
+     * as variable-length quantities.
+     */
+    private static byte[] data(int... values) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(new byte[] {0x50, 0x4C, 0x43, 0x41}, 0, 4);
+        for (long value : IntStream.concat(IntStream.of(AstSerializer.VERSION), IntStream.of(values)).toArray()) {
+            value &= 0xFFFFFFFFL;
+            while (value >= 0x80) {
+                output.write((int) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            output.write((int) value);
+        }
+        return output.toByteArray();
+    }
+
+    private static Ast.Source read(byte[] bytes) throws IOException {
+        return AstSerializer.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+}
@@ -0,0 +1,83 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conformance tests running the cases of {@link LexerTests} against {@link
+ * DfaLexer}, which must both pass them and produce exactly the same tokens
+ * (or exception index) as {@link Lexer}.
+ */
+public class DfaLexerTests {
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testIdentifier")
+    void testIdentifier(String test, String input, boolean success) {
+        test(input, Token.Type.IDENTIFIER, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testInteger")
+    void testInteger(String test, String input, boolean success) {
+        test(input, Token.Type.INTEGER, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testDecimal")
+    void testDecimal(String test, String input, boolean success) {
+        test(input, Token.Type.DECIMAL, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testCharacter")
+    void testCharacter(String test, String input, boolean success) {
+        test(input, Token.Type.CHARACTER, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testString")
+    void testString(String test, String input, boolean success) {
+        test(input, Token.Type.STRING, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testOperator")
+    void testOperator(String test, String input, boolean success) {
+        test(input, Token.Type.OPERATOR, success);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.LexerTests#testExamples")
+    void testExamples(String test, String input, List<Token> expected) {
+        Assertions.assertEquals(expected, new DfaLexer(input).lex());
+        Assertions.assertEquals(new Lexer(input).lex(), new DfaLexer(input).lex());
+    }
+
+    /**
+     * Tests that the input lexes to a single token of the expected type, and
+     * that the result of lexing is the same as with {@link Lexer}.
+     */
+    private static void test(String input, Token.Type expected, boolean success) {
+        List<Token> tokens = null;
+        try {
+            tokens = new DfaLexer(input).lex();
+            if (success) {
+                Assertions.assertEquals(Arrays.asList(new Token(expected, input, 0)), tokens);
+            } else {
+                Assertions.assertNotEquals(Arrays.asList(new Token(expected, input, 0)), tokens);
+            }
+        } catch (ParseException e) {
+            Assertions.assertFalse(success, e.getMessage());
+            ParseException reference = Assertions.assertThrows(ParseException.class, () -> new Lexer(input).lex());
+            Assertions.assertEquals(reference.getIndex(), e.getIndex());
+        }
+        if (tokens != null) {
+            Assertions.assertEquals(new Lexer(input).lex(), tokens);
+        }
+    }
+
+}
@@ -45,7 +45,41 @@ final class InterpreterTests {
                                         new Ast.Expression.Access(Optional.empty(), "x"),
                                         new Ast.Expression.Access(Optional.empty(), "y")                                ))
                         )))
-                ), Environment.NIL.getValue())
+                ), Environment.NIL.getValue()),
+                // FUN f() DO RETURN 1; END
+                // FUN main() DO LET y = 0; WHILE y < 1 DO LET z = 2; y = f(); y = y + z; END RETURN y; END
+                Arguments.of("Block Scope After Call", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Function("f", Arrays.asList(), Arrays.asList(
+                                        new Ast.Statement.Return(new Ast.Expression.Literal(BigInteger.ONE))
+                                )),
+                                new Ast.Function("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Statement.Declaration("y", Optional.of(new Ast.Expression.Literal(BigInteger.ZERO))),
+                                        new Ast.Statement.While(
+                                                new Ast.Expression.Binary("<",
+                                                        new Ast.Expression.Access(Optional.empty(), "y"),
+                                                        new Ast.Expression.Literal(BigInteger.ONE)
+                                                ),
+                                                Arrays.asList(
+                                                        new Ast.Statement.Declaration("z", Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(2)))),
+                                                        new Ast.Statement.Assignment(
+                                                                new Ast.Expression.Access(Optional.empty(), "y"),
+                                                                new Ast.Expression.Function("f", Arrays.asList())
+                                                        ),
+                                                        new Ast.Statement.Assignment(
+                                                                new Ast.Expression.Access(Optional.empty(), "y"),
+                                                                new Ast.Expression.Binary("+",
+                                                                        new Ast.Expression.Access(Optional.empty(), "y"),
+                                                                        new Ast.Expression.Access(Optional.empty(), "z")
+                                                                )
+                                                        )
+                                                )
+                                        ),
+                                        new Ast.Statement.Return(new Ast.Expression.Access(Optional.empty(), "y"))
+                                ))
+                        )
+                ), BigInteger.valueOf(3))
         );
     }
 
@@ -6,8 +6,19 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class LexerTests {
@@ -175,6 +186,217 @@ public class LexerTests {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testTokens(String test, String input, List<Token> expected) {
+        List<Token> tokens = new ArrayList<>();
+        new Lexer(input).tokens().forEachRemaining(tokens::add);
+        Assertions.assertEquals(expected, tokens);
+    }
+
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testBuffer(String test, String input, List<Token> expected) {
+        TokenBuffer buffer = new Lexer(input).lexBuffer();
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.get(i));
+        }
+        Assertions.assertEquals(expected, tokens);
+    }
+
+    @Test
+    void testSymbols() {
+        List<Token> tokens = new Lexer("LET x = x + y;").lex();
+        Assertions.assertEquals(SymbolTable.LET, tokens.get(0).getSymbol());
+        Assertions.assertEquals(tokens.get(1).getSymbol(), tokens.get(3).getSymbol());
+        Assertions.assertSame(tokens.get(1).getLiteral(), tokens.get(3).getLiteral());
+        Assertions.assertNotEquals(tokens.get(1).getSymbol(), tokens.get(5).getSymbol());
+        Assertions.assertEquals(SymbolTable.NONE, tokens.get(2).getSymbol());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testListener(String test, String input, List<Token> expected) {
+        List<Token> tokens = new ArrayList<>();
+        Lexer lexer = new Lexer(input);
+        lexer.setListener(tokens::add);
+        Assertions.assertEquals(expected, lexer.lex());
+        Assertions.assertEquals(expected, tokens);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testDecodeLiterals(String test, String input, Object expected) {
+        Lexer lexer = new Lexer(input);
+        lexer.setDecodeLiterals(true);
+        Token token = lexer.lexToken();
+        Assertions.assertEquals(expected, token.getValue());
+        Assertions.assertEquals(new Lexer(input).lexToken(), token);
+    }
+
+    private static Stream<Arguments> testDecodeLiterals() {
+        return Stream.of(
+                Arguments.of("Integer", "-123", new BigInteger("-123")),
+                Arguments.of("Large Integer", "123456789012345678901234567890", new BigInteger("123456789012345678901234567890")),
+                Arguments.of("Decimal", "1.50", new BigDecimal("1.50")),
+                Arguments.of("Character", "'c'", 'c'),
+                Arguments.of("Character Escape", "'\\n'", '\n'),
+                Arguments.of("String", "\"abc\"", "abc"),
+                Arguments.of("String Escapes", "\"a\\tx\\\"y\"", "a\tx\"y"),
+                Arguments.of("Identifier", "abc", null)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testRecovery(String test, String input, List<Token> expected, List<Diagnostics.Diagnostic> errors) {
+        Diagnostics diagnostics = new Diagnostics();
+        Assertions.assertEquals(expected, new Lexer(input).lex(diagnostics));
+        Assertions.assertEquals(errors, diagnostics.getDiagnostics());
+    }
+
+    private static Stream<Arguments> testRecovery() {
+        return Stream.of(
+                Arguments.of("Valid", "LET x = 5;", new Lexer("LET x = 5;").lex(), Arrays.asList()),
+                Arguments.of("Next Line", "x = \"abc;\ny = 'ab';", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 0),
+                        new Token(Token.Type.OPERATOR, "=", 2),
+                        new Token(Token.Type.ERROR, "\"abc;", 4),
+                        new Token(Token.Type.IDENTIFIER, "y", 10),
+                        new Token(Token.Type.OPERATOR, "=", 12),
+                        new Token(Token.Type.ERROR, "'ab';", 14)
+                ), Arrays.asList(
+                        new Diagnostics.Diagnostic("String literals cannot span multiple lines", 10),
+                        new Diagnostics.Diagnostic("Not ending with a single quote", 16)
+                )),
+                Arguments.of("Next Whitespace", "\"a\\qb c\" d", Arrays.asList(
+                        new Token(Token.Type.ERROR, "\"a\\qb", 0),
+                        new Token(Token.Type.IDENTIFIER, "c", 6),
+                        new Token(Token.Type.ERROR, "\"", 7),
+                        new Token(Token.Type.IDENTIFIER, "d", 9)
+                ), Arrays.asList(
+                        new Diagnostics.Diagnostic("Invalid escape", 3),
+                        new Diagnostics.Diagnostic("It is an unterminated string", 10)
+                ))
+        );
+    }
+
+    @Test
+    void testReaderInput() {
+        String input = largeInput();
+        Assertions.assertEquals(new Lexer(input).lex(),
+                new Lexer(new Lexer.CharStream(new StringReader(input))).lex());
+    }
+
+    @Test
+    void testByteInput() {
+        String input = largeInput();
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(new Lexer(input).lex(), new Lexer(new Lexer.CharStream(bytes)).lex());
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        Assertions.assertEquals(new Lexer(input).lex(), new Lexer(new Lexer.CharStream(direct)).lex());
+    }
+
+    @Test
+    void testMappedInput() throws IOException {
+        String input = largeInput();
+        Path file = Files.createTempFile("lexer", ".plc");
+        try {
+            Files.write(file, input.getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(file)) {
+                Assertions.assertEquals(new Lexer(input).lex(), new Lexer(Lexer.CharStream.map(channel)).lex());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testParallel() {
+        String input = largeInput();
+        List<Token> expected = new Lexer(input).lex();
+        List<Token> tokens = new Lexer(input).lexParallel(ForkJoinPool.commonPool(), 1000);
+        Assertions.assertEquals(expected, tokens);
+        for (int i = 0; i < tokens.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getSymbol(), tokens.get(i).getSymbol());
+        }
+    }
+
+    @Test
+    void testParallelDecodeLiterals() {
+        String input = largeInput();
+        Lexer sequential = new Lexer(input);
+        sequential.setDecodeLiterals(true);
+        List<Token> expected = sequential.lex();
+        Lexer parallel = new Lexer(input);
+        parallel.setDecodeLiterals(true);
+        List<Token> tokens = parallel.lexParallel(ForkJoinPool.commonPool(), 1000);
+        Assertions.assertEquals(expected, tokens);
+        for (int i = 0; i < tokens.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+        }
+        Assertions.assertTrue(tokens.stream().anyMatch(token -> token.getValue() != null));
+    }
+
+    @Test
+    void testParallelException() {
+        String input = largeInput() + "\"unterminated\n" + largeInput();
+        ParseException expected = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(input).lex());
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(input).lexParallel(ForkJoinPool.commonPool(), 1000));
+        Assertions.assertEquals(expected.getIndex(), exception.getIndex());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testIncremental(String test, String input, int offset, int removed, String inserted) {
+        IncrementalLexer lexer = new IncrementalLexer(input);
+        List<Token> before = new ArrayList<>(lexer.getTokens());
+        IncrementalLexer.Edit edit = lexer.edit(offset, removed, inserted);
+        String source = input.substring(0, offset) + inserted + input.substring(offset + removed);
+        List<Token> expected = new Lexer(source).lex();
+        Assertions.assertEquals(source, lexer.getSource());
+        Assertions.assertEquals(expected, lexer.getTokens());
+        Assertions.assertEquals(before.size() - edit.getRemoved() + edit.getInserted(), expected.size());
+    }
+
+    private static Stream<Arguments> testIncremental() {
+        return Stream.of(
+                Arguments.of("Insert Identifier", "LET x = 5;", 4, 0, "y"),
+                Arguments.of("Split Identifier", "LET xy = 5;", 5, 0, " "),
+                Arguments.of("Join Identifiers", "LET x y = 5;", 5, 1, ""),
+                Arguments.of("Complete Decimal", "a -0.x", 5, 1, "5"),
+                Arguments.of("Insert String", "print(x);", 6, 0, "\"a b\", "),
+                Arguments.of("Remove All", "LET x = 5;", 0, 10, ""),
+                Arguments.of("Insert Lines", largeInput(), 0, 0, "LET y = 1;\nLET z = 2;\n")
+        );
+    }
+
+    @Test
+    void testIncrementalException() {
+        IncrementalLexer lexer = new IncrementalLexer("print(\"x\");");
+        Assertions.assertThrows(ParseException.class, () -> lexer.edit(8, 1, ""));
+        Assertions.assertEquals("print(\"x\");", lexer.getSource());
+        Assertions.assertEquals(new Lexer("print(\"x\");").lex(), lexer.getTokens());
+    }
+
+    /**
+     * Returns an input large enough to slide the window of the streaming
+     * {@link Lexer.CharStream} inputs several times.
+     */
+    private static String largeInput() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("LET x").append(i).append(" = -").append(i).append(".5;\n");
+            builder.append("print(\"h\u00e9llo, \uD83D\uDE00!\");\n");
+        }
+        return builder.toString();
+    }
+
     @Test
     void testException() {
         ParseException exception = Assertions.assertThrows(ParseException.class,
@@ -200,6 +200,50 @@ final class ParserExpressionTests {
                                 new Ast.Expression.Access(Optional.empty(), "expr2")
                         )
                 ),
+                Arguments.of("Precedence",
+                        Arrays.asList(
+                                //a + b * c == d
+                                new Token(Token.Type.IDENTIFIER, "a", 0),
+                                new Token(Token.Type.OPERATOR, "+", 2),
+                                new Token(Token.Type.IDENTIFIER, "b", 4),
+                                new Token(Token.Type.OPERATOR, "*", 6),
+                                new Token(Token.Type.IDENTIFIER, "c", 8),
+                                new Token(Token.Type.OPERATOR, "==", 10),
+                                new Token(Token.Type.IDENTIFIER, "d", 13)
+                        ),
+                        new Ast.Expression.Binary("==",
+                                new Ast.Expression.Binary("+",
+                                        new Ast.Expression.Access(Optional.empty(), "a"),
+                                        new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Access(Optional.empty(), "b"),
+                                                new Ast.Expression.Access(Optional.empty(), "c")
+                                        )
+                                ),
+                                new Ast.Expression.Access(Optional.empty(), "d")
+                        )
+                ),
+                Arguments.of("Left Associative",
+                        Arrays.asList(
+                                //a - b * c - d
+                                new Token(Token.Type.IDENTIFIER, "a", 0),
+                                new Token(Token.Type.OPERATOR, "-", 2),
+                                new Token(Token.Type.IDENTIFIER, "b", 4),
+                                new Token(Token.Type.OPERATOR, "*", 6),
+                                new Token(Token.Type.IDENTIFIER, "c", 8),
+                                new Token(Token.Type.OPERATOR, "-", 10),
+                                new Token(Token.Type.IDENTIFIER, "d", 12)
+                        ),
+                        new Ast.Expression.Binary("-",
+                                new Ast.Expression.Binary("-",
+                                        new Ast.Expression.Access(Optional.empty(), "a"),
+                                        new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Access(Optional.empty(), "b"),
+                                                new Ast.Expression.Access(Optional.empty(), "c")
+                                        )
+                                ),
+                                new Ast.Expression.Access(Optional.empty(), "d")
+                        )
+                ),
                 Arguments.of("Missing Operand",
                         Arrays.asList(
                                 new Token(Token.Type.IDENTIFIER, "expr", 0),
@@ -11,6 +11,7 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -612,6 +613,228 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @Test
+    void testLexerSource() {
+        String input = String.join("\n",
+                "VAR first: Integer = 1;",
+                "FUN main(): Integer DO",
+                "    WHILE first != 10 DO",
+                "        print(first);",
+                "        first = first + 1;",
+                "    END",
+                "END"
+        );
+        Ast.Source expected = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(expected, new Parser(new Lexer(input).tokens()).parseSource());
+        Assertions.assertEquals(expected, new Parser(new Lexer(input).lexBuffer()).parseSource());
+    }
+
+    @Test
+    void testParallelSource() {
+        StringBuilder builder = new StringBuilder("VAR first: Integer = 1;\n");
+        for (int i = 0; i < 50; i++) {
+            builder.append("FUN f").append(i).append("(x: Integer): Integer DO\n")
+                    .append("    IF x > ").append(i).append(" DO\n")
+                    .append("        x = FUN;\n")
+                    .append("    END\n")
+                    .append("    RETURN x * (f").append(i).append("(x - 1) + 1);\n")
+                    .append("END\n");
+        }
+        String input = builder.toString();
+        Ast.Source expected = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(50, expected.getFunctions().size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[] {1, 100, 1 << 20}) {
+                Assertions.assertEquals(expected, new Parser(new Lexer(input).lex()).parseSourceParallel(pool, chunkSize));
+                Assertions.assertEquals(expected, new Parser(new Lexer(input).lexBuffer()).parseSourceParallel(pool, chunkSize));
+            }
+            String invalid = input.replace("FUN f30(x: Integer): Integer DO", "FUN f30(x: Integer): Integer");
+            ParseException exception = Assertions.assertThrows(ParseException.class,
+                    () -> new Parser(new Lexer(invalid).lex()).parseSource());
+            ParseException parallel = Assertions.assertThrows(ParseException.class,
+                    () -> new Parser(new Lexer(invalid).lex()).parseSourceParallel(pool, 1));
+            Assertions.assertEquals(exception.getIndex(), parallel.getIndex());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testIncremental(String test, String input, int offset, int removed, String inserted, List<String> reused) {
+        IncrementalLexer lexer = new IncrementalLexer(input);
+        IncrementalParser parser = new IncrementalParser(lexer.getTokens());
+        Ast.Source before = parser.getSource();
+        Ast.Source source = parser.edit(lexer.getTokens(), lexer.edit(offset, removed, inserted));
+        Ast.Source expected = new Parser(new Lexer(lexer.getSource()).lex()).parseSource();
+        Assertions.assertEquals(expected, source);
+        for (Ast.Function function : source.getFunctions()) {
+            boolean same = before.getFunctions().stream().anyMatch(f -> f == function);
+            Assertions.assertEquals(reused.contains(function.getName()), same, function.getName());
+        }
+    }
+
+    private static Stream<Arguments> testIncremental() {
+        String input = String.join("\n",
+                "VAR count: Integer = 0;",
+                "FUN first() DO",
+                "    count = count + 1;",
+                "END",
+                "FUN second() DO",
+                "    print(count);",
+                "END",
+                "FUN third() DO",
+                "    RETURN count;",
+                "END",
+                "FUN fourth() DO",
+                "    RETURN 4;",
+                "END"
+        );
+        int offset = input.indexOf("print(count)");
+        int second = input.indexOf("FUN second");
+        int third = input.indexOf("FUN third");
+        return Stream.of(
+                Arguments.of("Change Statement", input, offset + 6, 5, "1 + 2", Arrays.asList("first", "third", "fourth")),
+                Arguments.of("Insert Statement", input, offset, 0, "count = 2;\n    ", Arrays.asList("first", "third", "fourth")),
+                Arguments.of("Remove Function", input, second, third - second, "", Arrays.asList("third", "fourth")),
+                Arguments.of("Insert Function", input, second, 0, "FUN zero() DO\n    RETURN 0;\nEND\n", Arrays.asList("second", "third", "fourth")),
+                Arguments.of("Append Function", input, input.length(), 0, "\nFUN fifth() DO\n    RETURN 5;\nEND", Arrays.asList("first", "second", "third"))
+        );
+    }
+
+    @Test
+    void testIncrementalException() {
+        String input = "FUN first() DO\n    print(1);\nEND\nFUN second() DO\n    print(2);\nEND";
+        IncrementalLexer lexer = new IncrementalLexer(input);
+        IncrementalParser parser = new IncrementalParser(lexer.getTokens());
+        Ast.Source before = parser.getSource();
+        int offset = input.indexOf(")", input.indexOf("print"));
+        Assertions.assertThrows(ParseException.class, () -> parser.edit(lexer.getTokens(), lexer.edit(offset, 1, "")));
+        Assertions.assertSame(before, parser.getSource());
+        Ast.Source source = parser.edit(lexer.getTokens(), lexer.edit(offset, 0, " + 2)"));
+        Assertions.assertEquals(new Parser(new Lexer(lexer.getSource()).lex()).parseSource(), source);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRecovery(String test, String input, String expected, List<Diagnostics.Diagnostic> errors) {
+        Diagnostics diagnostics = new Diagnostics();
+        Assertions.assertEquals(new Parser(new Lexer(expected).lex()).parseSource(),
+                new Parser(new Lexer(input).lex()).parseSource(diagnostics));
+        Assertions.assertEquals(errors, diagnostics.getDiagnostics());
+    }
+
+    private static Stream<Arguments> testRecovery() {
+        String valid = "VAR x: Integer = 1;\nFUN main() DO\n    print(x);\nEND";
+        return Stream.of(
+                Arguments.of("Valid", valid, valid, Arrays.asList()),
+                Arguments.of("Global",
+                        "VAR x: Integer = 1 VAR y: Integer = 2;\nFUN main() DO\n    print(1);\nEND",
+                        "VAR y: Integer = 2;\nFUN main() DO\n    print(1);\nEND",
+                        Arrays.asList(new Diagnostics.Diagnostic("Missing closing semi-colon", 19))
+                ),
+                Arguments.of("Statements",
+                        "FUN main() DO\n    x = ;\n    print(1);\n    y = 2\nEND",
+                        "FUN main() DO\n    print(1);\nEND",
+                        Arrays.asList(
+                                new Diagnostics.Diagnostic("Error", 22),
+                                new Diagnostics.Diagnostic("Missing semicolon", 48)
+                        )
+                ),
+                Arguments.of("Nested",
+                        "FUN main() DO\n    IF x DO\n        y = ;\n        z();\n    ELSE\n        w();\n    END\n    WHILE x DO ) ; v(); END\nEND",
+                        "FUN main() DO\n    IF x DO\n        z();\n    ELSE\n        w();\n    END\n    WHILE x DO v(); END\nEND",
+                        Arrays.asList(
+                                new Diagnostics.Diagnostic("Error", 38),
+                                new Diagnostics.Diagnostic("Error", 98)
+                        )
+                ),
+                Arguments.of("Function",
+                        "FUN f( DO x; END\nFUN main() DO print(1); END",
+                        "FUN main() DO print(1); END",
+                        Arrays.asList(new Diagnostics.Diagnostic("Missing identifier", 10))
+                ),
+                Arguments.of("Missing END",
+                        "FUN f() DO x;\nFUN main() DO y = ; print(1); END",
+                        "FUN main() DO print(1); END",
+                        Arrays.asList(
+                                new Diagnostics.Diagnostic("Missing END", 14),
+                                new Diagnostics.Diagnostic("Error", 32)
+                        )
+                ),
+                Arguments.of("Switch Without Case",
+                        "FUN f() DO SWITCH x y; print(1); END\nFUN main() DO print(2); END",
+                        "FUN f() DO print(1); END\nFUN main() DO print(2); END",
+                        Arrays.asList(new Diagnostics.Diagnostic("Expected CASE or DEFAULT", 20))
+                )
+        );
+    }
+
+    @Test
+    void testCompact() {
+        String input = String.join("\n",
+                "VAR count: Integer = 0;",
+                "LIST values: Decimal = [1.0, 2.0];",
+                "FUN main(a: Integer, b: Decimal): Integer DO",
+                "    LET x: Integer = values[0] + count * 2;",
+                "    IF x > 1 != (a == b) DO print(x, \"x\"); ELSE x = x - 1; END",
+                "    WHILE x < 10 DO x = x + 1; END",
+                "    RETURN f();",
+                "END"
+        );
+        Parser parser = new Parser(new Lexer(input).lex());
+        parser.setCompact(true);
+        Ast.Source source = parser.parseSource();
+        Assertions.assertEquals(new Parser(new Lexer(input).lex()).parseSource(), source);
+        List<Ast.Statement> statements = source.getFunctions().get(0).getStatements();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> statements.add(statements.get(0)));
+
+        parser = new Parser(new Lexer("FUN main() DO\n    print(TRUE, FALSE, NIL, TRUE);\nEND").lex());
+        parser.setCompact(true);
+        Ast.Statement.Expression statement = (Ast.Statement.Expression) parser.parseSource().getFunctions().get(0).getStatements().get(0);
+        List<Ast.Expression> arguments = ((Ast.Expression.Function) statement.getExpression()).getArguments();
+        Assertions.assertSame(arguments.get(0), arguments.get(3));
+        Assertions.assertEquals(Environment.Type.BOOLEAN, arguments.get(1).getType());
+        Assertions.assertNull(((Ast.Expression.Literal) arguments.get(2)).getLiteral());
+    }
+
+    @Test
+    void testDeepNesting() {
+        int depth = 100000;
+        StringBuilder builder = new StringBuilder("FUN main() DO\n");
+        for (int i = 0; i < depth; i++) {
+            builder.append("IF x DO\n");
+        }
+        builder.append("y = ");
+        for (int i = 0; i < depth; i++) {
+            builder.append('(');
+        }
+        builder.append('1');
+        for (int i = 0; i < depth; i++) {
+            builder.append(')');
+        }
+        builder.append(";\n");
+        for (int i = 0; i < depth; i++) {
+            builder.append("END\n");
+        }
+        builder.append("END\n");
+        Ast.Source source = new Parser(new Lexer(builder.toString()).lex()).parseSource();
+
+        // walks the tree iteratively, since the recursive equals and toString
+        // of the AST would overflow the stack as well
+        Ast.Statement statement = source.getFunctions().get(0).getStatements().get(0);
+        for (int i = 1; i < depth; i++) {
+            statement = ((Ast.Statement.If) statement).getThenStatements().get(0);
+        }
+        Ast.Statement.If innermost = (Ast.Statement.If) statement;
+        Ast.Expression expression = ((Ast.Statement.Assignment) innermost.getThenStatements().get(0)).getValue();
+        for (int i = 0; i < depth; i++) {
+            expression = ((Ast.Expression.Group) expression).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expression.Literal(BigInteger.ONE), expression);
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
@@ -0,0 +1,184 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+final class SpanTableTests {
+
+    private static final String INPUT = String.join("\n",
+            "VAR count: Integer = 1 + 2;",
+            "FUN main(): Integer DO",
+            "    LET x: Integer = f(count, (3));",
+            "    IF x > 1 DO",
+            "        x = list[0];",
+            "    END",
+            "    RETURN x;",
+            "END"
+    );
+
+    @Test
+    void testParse() {
+        SpanTable spans = new SpanTable();
+        Ast.Source source = parse(INPUT, spans);
+        Ast.Global global = source.getGlobals().get(0);
+        Ast.Function main = source.getFunctions().get(0);
+        Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) main.getStatements().get(0);
+        Ast.Expression.Function call = (Ast.Expression.Function) declaration.getValue().get();
+        Ast.Statement.If statement = (Ast.Statement.If) main.getStatements().get(1);
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) statement.getThenStatements().get(0);
+
+        assertSpan(INPUT, spans, source, INPUT);
+        assertSpan(INPUT, spans, global, "VAR count: Integer = 1 + 2;");
+        assertSpan(INPUT, spans, global.getValue().get(), "1 + 2");
+        assertSpan(INPUT, spans, main, INPUT.substring(INPUT.indexOf("FUN")));
+        assertSpan(INPUT, spans, declaration, "LET x: Integer = f(count, (3));");
+        assertSpan(INPUT, spans, call, "f(count, (3))");
+        assertSpan(INPUT, spans, call.getArguments().get(1), "(3)");
+        assertSpan(INPUT, spans, statement, "IF x > 1 DO\n        x = list[0];\n    END");
+        assertSpan(INPUT, spans, statement.getCondition(), "x > 1");
+        assertSpan(INPUT, spans, assignment, "x = list[0];");
+        assertSpan(INPUT, spans, assignment.getValue(), "list[0]");
+        assertSpan(INPUT, spans, main.getStatements().get(2), "RETURN x;");
+    }
+
+    @Test
+    void testBinary() {
+        String input = "VAL x: Integer = 1 + 2 * (3 - 4) + 5;";
+        SpanTable spans = new SpanTable();
+        Ast.Expression.Binary outer = (Ast.Expression.Binary) parse(input, spans).getGlobals().get(0).getValue().get();
+        Ast.Expression.Binary left = (Ast.Expression.Binary) outer.getLeft();
+        Ast.Expression.Binary product = (Ast.Expression.Binary) left.getRight();
+        assertSpan(input, spans, outer, "1 + 2 * (3 - 4) + 5");
+        assertSpan(input, spans, left, "1 + 2 * (3 - 4)");
+        assertSpan(input, spans, product, "2 * (3 - 4)");
+        assertSpan(input, spans, ((Ast.Expression.Group) product.getRight()).getExpression(), "3 - 4");
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            builder.append("FUN f").append(i).append("() DO\n    x = ").append(i).append(";\nEND\n");
+        }
+        String input = builder.toString();
+        SpanTable spans = new SpanTable();
+        Parser parser = new Parser(new Lexer(input).lexBuffer());
+        parser.setSpans(spans);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Ast.Source source = parser.parseSourceParallel(pool, 16);
+            for (Ast.Function function : source.getFunctions()) {
+                Assertions.assertTrue(input.startsWith("FUN " + function.getName() + "()", spans.getStart(function)));
+                assertSpan(input, spans, function.getStatements().get(0), "x = " + function.getName().substring(1) + ";");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCompact() {
+        String input = "VAL x: Boolean = TRUE == NIL;";
+        SpanTable spans = new SpanTable();
+        Parser parser = new Parser(new Lexer(input).lex());
+        parser.setCompact(true);
+        parser.setSpans(spans);
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) parser.parseSource().getGlobals().get(0).getValue().get();
+        assertSpan(input, spans, binary, "TRUE == NIL");
+        Assertions.assertFalse(spans.contains(binary.getLeft()));
+        Assertions.assertFalse(spans.contains(binary.getRight()));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLineIndex(String test, String input, int offset, int line, int column) {
+        LineIndex lines = new LineIndex(input);
+        Assertions.assertEquals(line, lines.getLine(offset));
+        Assertions.assertEquals(column, lines.getColumn(offset));
+        Assertions.assertEquals(line + ":" + column, lines.format(offset));
+    }
+
+    private static Stream<Arguments> testLineIndex() {
+        return Stream.of(
+                Arguments.of("Start", "abc\ndef", 0, 1, 1),
+                Arguments.of("End of Line", "abc\ndef", 3, 1, 4),
+                Arguments.of("Next Line", "abc\ndef", 4, 2, 1),
+                Arguments.of("End", "abc\ndef", 7, 2, 4),
+                Arguments.of("Empty", "", 0, 1, 1),
+                Arguments.of("Empty Lines", "\n\n\nx", 3, 4, 1),
+                Arguments.of("CRLF", "a\r\nb", 3, 2, 1),
+                Arguments.of("CR", "a\rb\rc", 4, 3, 1)
+        );
+    }
+
+    @Test
+    void testLineIndexBounds() {
+        LineIndex lines = new LineIndex("a\nb");
+        Assertions.assertEquals(2, lines.getLineCount());
+        Assertions.assertEquals(2, lines.getLineStart(2));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lines.getLine(4));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lines.getLineStart(3));
+    }
+
+    @Test
+    void testAnalyzerError() {
+        String input = String.join("\n",
+                "VAR x: Integer = 1;",
+                "VAR y: Integer = (x + 1) * undefined;",
+                "FUN main(): Integer DO",
+                "    RETURN 0;",
+                "END"
+        );
+        SpanTable spans = new SpanTable();
+        Ast.Source source = parse(input, spans);
+        Scope scope = new Scope(null);
+        scope.defineFunction("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL);
+        Analyzer analyzer = new Analyzer(scope);
+        analyzer.setSpans(spans);
+        SourceException exception = Assertions.assertThrows(SourceException.class, () -> analyzer.visit(source));
+        Assertions.assertEquals("undefined", input.substring(exception.getStart(), exception.getEnd()));
+        Assertions.assertEquals("2:28", new LineIndex(input).format(exception.getStart()));
+    }
+
+    @Test
+    void testInterpreterError() {
+        String input = String.join("\n",
+                "FUN main(): Integer DO",
+                "    RETURN 1 + undefined;",
+                "END"
+        );
+        SpanTable spans = new SpanTable();
+        Ast.Source source = parse(input, spans);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setSpans(spans);
+        SourceException exception = Assertions.assertThrows(SourceException.class, () -> interpreter.visit(source));
+        Assertions.assertEquals("undefined", input.substring(exception.getStart(), exception.getEnd()));
+        Assertions.assertEquals("2:16", new LineIndex(input).format(exception.getStart()));
+    }
+
+    @Test
+    void testNoSpans() {
+        Ast.Source source = new Parser(new Lexer("FUN main(): Integer DO RETURN undefined; END").lex()).parseSource();
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(new Scope(null)).visit(source));
+        Assertions.assertFalse(exception instanceof SourceException);
+    }
+
+    private static Ast.Source parse(String input, SpanTable spans) {
+        Parser parser = new Parser(new Lexer(input).lex());
+        parser.setSpans(spans);
+        return parser.parseSource();
+    }
+
+    private static void assertSpan(String input, SpanTable spans, Ast node, String expected) {
+        Assertions.assertTrue(spans.contains(node), node.toString());
+        Assertions.assertEquals(expected, input.substring(spans.getStart(node), spans.getEnd(node)));
+    }
+
+}